@@ -50,4 +50,10 @@ public @interface DiscoverService {
     @Nonbinding AccessType accessType() default AccessType.GATEWAY;
 
     @Nonbinding ServiceType serviceType() default ServiceType.REST;
+
+    /**
+     * Load balancer, used to pick the instance: round-robin, power-of-two-choices, ewma or fully qualified class name
+     * of a LoadBalancer implementation. If empty, kumuluzee.discovery.load-balancer is used.
+     */
+    @Nonbinding String loadBalancer() default "";
 }
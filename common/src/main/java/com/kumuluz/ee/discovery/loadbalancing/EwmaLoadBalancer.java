@@ -0,0 +1,170 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.loadbalancing;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+
+import java.net.URL;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Latency-aware instance selection. An exponentially weighted moving average of observed response latency is kept for
+ * each instance (protocol, host and port of its URL), decaying with time, so old observations lose weight. Two distinct instances are sampled at random
+ * and the one with the lower average latency, weighted by the number of requests in flight, is picked. Instances
+ * without observations are preferred, so new instances receive traffic.
+ *
+ * Failed responses are recorded with at least the failure penalty latency, configured with
+ * kumuluzee.discovery.ewma.failure-penalty-ms (default 1000). Decay time is configured with
+ * kumuluzee.discovery.ewma.decay-ms (default 10000). Statistics of an instance are evicted once it has had no
+ * requests for five decay times or a minute, whichever is longer.
+ *
+ * @since 1.2.0
+ */
+public class EwmaLoadBalancer implements LoadBalancer {
+
+    private final InstanceStates<InstanceStatistics> statistics;
+
+    private final double decayNanos;
+    private final long failurePenaltyNanos;
+
+    public EwmaLoadBalancer() {
+        ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(
+                configurationUtil.getInteger("kumuluzee.discovery.ewma.decay-ms").orElse(10000));
+        this.failurePenaltyNanos = TimeUnit.MILLISECONDS.toNanos(
+                configurationUtil.getInteger("kumuluzee.discovery.ewma.failure-penalty-ms").orElse(1000));
+
+        // averages of instances idle for five decay times are negligible
+        this.statistics = new InstanceStates<>(InstanceStatistics::new,
+                Math.max((long) (5 * decayNanos), TimeUnit.MINUTES.toNanos(1)));
+    }
+
+    @Override
+    public Optional<URL> pick(Object serviceKey, URL[] instances) {
+
+        if (instances.length == 0) {
+            return Optional.empty();
+        }
+        if (instances.length == 1) {
+            return Optional.of(instances[0]);
+        }
+
+        statistics.evictIdle();
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(instances.length);
+        int second = random.nextInt(instances.length - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        long now = System.nanoTime();
+        if (getScore(instances[second], now) < getScore(instances[first], now)) {
+            return Optional.of(instances[second]);
+        } else {
+            return Optional.of(instances[first]);
+        }
+    }
+
+    @Override
+    public void onRequestStarted(URL instance) {
+        InstanceStatistics instanceStatistics = statistics.getOrCreate(instance);
+        instanceStatistics.lastActivityNanos = System.nanoTime();
+        instanceStatistics.requestsInFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestCompleted(URL instance, long durationNanos, boolean failed) {
+        InstanceStatistics instanceStatistics = statistics.getOrCreate(instance);
+        instanceStatistics.requestsInFlight.updateAndGet(count -> (count > 0) ? count - 1 : 0);
+        observe(instanceStatistics, durationNanos, failed);
+    }
+
+    @Override
+    public void onResponse(URL instance, long durationNanos, boolean failed) {
+        observe(statistics.getOrCreate(instance), durationNanos, failed);
+    }
+
+    private void observe(InstanceStatistics instanceStatistics, long durationNanos, boolean failed) {
+        long now = System.nanoTime();
+        instanceStatistics.lastActivityNanos = now;
+        instanceStatistics.observe((failed) ? Math.max(durationNanos, failurePenaltyNanos) : durationNanos,
+                now, decayNanos);
+    }
+
+    private double getScore(URL instance, long now) {
+        InstanceStatistics instanceStatistics = statistics.get(instance);
+        if (instanceStatistics == null) {
+            return 0;
+        }
+
+        return instanceStatistics.getAverage(now, decayNanos) * (instanceStatistics.requestsInFlight.get() + 1);
+    }
+
+    private static class InstanceStatistics extends InstanceState {
+
+        // null until the first observation; replaced as a whole, so reads do not lock
+        private final AtomicReference<Observation> observation = new AtomicReference<>();
+
+        InstanceStatistics(URL instance) {
+            super(instance);
+        }
+
+        void observe(long durationNanos, long now, double decayNanos) {
+            observation.updateAndGet(previous -> {
+                if (previous == null) {
+                    return new Observation(durationNanos, now);
+                }
+
+                double weight = Math.exp(-Math.max(now - previous.timeNanos, 0) / decayNanos);
+                return new Observation(previous.average * weight + durationNanos * (1 - weight), now);
+            });
+        }
+
+        /**
+         * Returns the average, decayed towards zero with the time since the last observation, so instances that are
+         * not picked because of a high average are eventually retried.
+         */
+        double getAverage(long now, double decayNanos) {
+            Observation last = observation.get();
+            if (last == null) {
+                return 0;
+            }
+
+            return last.average * Math.exp(-Math.max(now - last.timeNanos, 0) / decayNanos);
+        }
+    }
+
+    private static class Observation {
+
+        private final double average;
+        private final long timeNanos;
+
+        Observation(double average, long timeNanos) {
+            this.average = average;
+            this.timeNanos = timeNanos;
+        }
+    }
+}
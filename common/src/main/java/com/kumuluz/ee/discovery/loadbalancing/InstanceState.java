@@ -0,0 +1,60 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.loadbalancing;
+
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load balancer state of a single instance, identified by the protocol, host and port of its URL.
+ *
+ * @since 1.2.0
+ */
+class InstanceState {
+
+    private final String protocol;
+    private final String host;
+    private final int port;
+
+    final AtomicInteger requestsInFlight = new AtomicInteger();
+
+    volatile long lastActivityNanos;
+
+    InstanceState(URL instance) {
+        this.protocol = instance.getProtocol();
+        this.host = instance.getHost();
+        this.port = getPort(instance);
+        this.lastActivityNanos = System.nanoTime();
+    }
+
+    /**
+     * Checks, if the state belongs to the instance. Unlike {@link URL#equals(Object)}, does not resolve the host and,
+     * unlike comparing {@link URL#toString()}, does not allocate.
+     */
+    boolean matches(URL instance) {
+        return port == getPort(instance) && host.equals(instance.getHost()) &&
+                protocol.equals(instance.getProtocol());
+    }
+
+    private static int getPort(URL instance) {
+        return (instance.getPort() == -1) ? instance.getDefaultPort() : instance.getPort();
+    }
+}
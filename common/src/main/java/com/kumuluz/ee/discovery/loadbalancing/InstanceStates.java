@@ -0,0 +1,128 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.loadbalancing;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * States of instances, used by a load balancer. States are grouped by host, so they are looked up with the URL of the
+ * instance, without allocating.
+ *
+ * States of instances, which had no requests in flight and no activity for the idle time, are evicted, so states of
+ * instances, which are no longer registered, do not accumulate. Eviction runs at most once per idle time, when
+ * {@link #evictIdle()} is called.
+ *
+ * @param <S> state type
+ * @since 1.2.0
+ */
+class InstanceStates<S extends InstanceState> {
+
+    private final ConcurrentMap<String, InstanceState[]> states = new ConcurrentHashMap<>();
+
+    private final Function<URL, S> stateFactory;
+    private final long idleNanos;
+    private final AtomicLong nextEvictionNanos;
+
+    InstanceStates(Function<URL, S> stateFactory, long idleNanos) {
+        this.stateFactory = stateFactory;
+        this.idleNanos = idleNanos;
+        this.nextEvictionNanos = new AtomicLong(System.nanoTime() + idleNanos);
+    }
+
+    /**
+     * Returns the state of the instance.
+     *
+     * @param instance instance URL
+     * @return state or null, if the instance has no state
+     */
+    @SuppressWarnings("unchecked")
+    S get(URL instance) {
+        InstanceState[] hostStates = states.get(instance.getHost());
+        if (hostStates != null) {
+            for (InstanceState state : hostStates) {
+                if (state.matches(instance)) {
+                    return (S) state;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the state of the instance, creating it, if the instance has no state.
+     *
+     * @param instance instance URL
+     * @return state
+     */
+    S getOrCreate(URL instance) {
+        S state = get(instance);
+        while (state == null) {
+            states.compute(instance.getHost(), (host, hostStates) -> {
+                if (hostStates == null) {
+                    return new InstanceState[]{stateFactory.apply(instance)};
+                }
+                for (InstanceState hostState : hostStates) {
+                    if (hostState.matches(instance)) {
+                        return hostStates;
+                    }
+                }
+
+                InstanceState[] updatedStates = Arrays.copyOf(hostStates, hostStates.length + 1);
+                updatedStates[hostStates.length] = stateFactory.apply(instance);
+                return updatedStates;
+            });
+            state = get(instance);
+        }
+
+        return state;
+    }
+
+    /**
+     * Evicts states of idle instances, if the idle time has passed since the last eviction. A request started on an
+     * instance while its state is being evicted is not counted.
+     */
+    void evictIdle() {
+        long now = System.nanoTime();
+        long nextEviction = nextEvictionNanos.get();
+        if (now - nextEviction < 0 || !nextEvictionNanos.compareAndSet(nextEviction, now + idleNanos)) {
+            return;
+        }
+
+        for (String host : states.keySet()) {
+            states.computeIfPresent(host, (h, hostStates) -> {
+                InstanceState[] activeStates = Arrays.stream(hostStates)
+                        .filter(state -> state.requestsInFlight.get() > 0 || now - state.lastActivityNanos < idleNanos)
+                        .toArray(InstanceState[]::new);
+
+                if (activeStates.length == hostStates.length) {
+                    return hostStates;
+                }
+                return (activeStates.length == 0) ? null : activeStates;
+            });
+        }
+    }
+}
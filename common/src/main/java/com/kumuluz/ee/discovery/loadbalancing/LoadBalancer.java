@@ -0,0 +1,74 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.loadbalancing;
+
+import java.net.URL;
+import java.util.Optional;
+
+/**
+ * Strategy for selecting a service instance among the discovered instances.
+ *
+ * Implementations must be thread-safe, since a single instance is shared by all lookups using it. Custom
+ * implementations need a public no-argument constructor and are selected by their fully qualified class name (see
+ * {@link LoadBalancers}).
+ *
+ * @since 1.2.0
+ */
+public interface LoadBalancer {
+
+    /**
+     * Picks an instance of the given service.
+     *
+     * @param serviceKey key identifying the service, must implement equals and hashCode
+     * @param instances  available instances, must not be modified
+     * @return picked instance or empty, if no instances are available
+     */
+    Optional<URL> pick(Object serviceKey, URL[] instances);
+
+    /**
+     * Called when a request to the instance is started through a {@link ServiceInstanceHandle}.
+     *
+     * @param instance instance URL
+     */
+    default void onRequestStarted(URL instance) {
+    }
+
+    /**
+     * Called when a request to the instance, started through a {@link ServiceInstanceHandle}, is completed.
+     *
+     * @param instance      instance URL
+     * @param durationNanos duration of the request in nanoseconds
+     * @param failed        true, if the request failed
+     */
+    default void onRequestCompleted(URL instance, long durationNanos, boolean failed) {
+    }
+
+    /**
+     * Called when a response of the instance is observed outside of a {@link ServiceInstanceHandle}, e.g. by a client
+     * filter. Requests in flight are not affected.
+     *
+     * @param instance      instance URL
+     * @param durationNanos duration of the request in nanoseconds
+     * @param failed        true, if the request failed
+     */
+    default void onResponse(URL instance, long durationNanos, boolean failed) {
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.loadbalancing;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * Registry of load balancers.
+ *
+ * Load balancers are selected by name: built-in strategies are available as {@value #ROUND_ROBIN},
+ * {@value #POWER_OF_TWO_CHOICES} and {@value #EWMA}, custom {@link LoadBalancer} implementations by their fully qualified class name.
+ * A single instance is kept for each name, so statistics are shared by all lookups using the same strategy. The
+ * default strategy is configured with the key kumuluzee.discovery.load-balancer.
+ *
+ * @since 1.2.0
+ */
+public class LoadBalancers {
+
+    private static final Logger log = Logger.getLogger(LoadBalancers.class.getName());
+
+    public static final String ROUND_ROBIN = "round-robin";
+    public static final String POWER_OF_TWO_CHOICES = "power-of-two-choices";
+    public static final String EWMA = "ewma";
+
+    private static final ConcurrentMap<String, LoadBalancer> loadBalancers = new ConcurrentHashMap<>();
+
+    private static volatile LoadBalancer defaultLoadBalancer;
+
+    /**
+     * Returns the load balancer, configured with kumuluzee.discovery.load-balancer, or round-robin if not configured.
+     *
+     * @return default load balancer
+     */
+    public static LoadBalancer getDefault() {
+        LoadBalancer loadBalancer = defaultLoadBalancer;
+        if (loadBalancer == null) {
+            loadBalancer = get(ConfigurationUtil.getInstance().get("kumuluzee.discovery.load-balancer")
+                    .orElse(ROUND_ROBIN));
+            defaultLoadBalancer = loadBalancer;
+        }
+
+        return loadBalancer;
+    }
+
+    /**
+     * Returns the load balancer with the given name. If name is empty, the default load balancer is returned.
+     *
+     * @param name name of a built-in strategy or fully qualified class name of a LoadBalancer implementation
+     * @return load balancer
+     */
+    public static LoadBalancer get(String name) {
+        if (name == null || name.isEmpty()) {
+            return getDefault();
+        }
+
+        LoadBalancer loadBalancer = loadBalancers.get(name);
+        if (loadBalancer == null) {
+            loadBalancer = loadBalancers.computeIfAbsent(name, LoadBalancers::createLoadBalancer);
+        }
+
+        return loadBalancer;
+    }
+
+    /**
+     * Reports an observed response of the service instance to all load balancers in use.
+     *
+     * @param serviceInstance instance URL
+     * @param durationNanos   duration of the request in nanoseconds
+     * @param failed          true, if the request failed
+     */
+    public static void report(URL serviceInstance, long durationNanos, boolean failed) {
+        for (LoadBalancer loadBalancer : loadBalancers.values()) {
+            loadBalancer.onResponse(serviceInstance, durationNanos, failed);
+        }
+    }
+
+    private static LoadBalancer createLoadBalancer(String name) {
+        switch (name) {
+            case ROUND_ROBIN:
+                return new RoundRobinLoadBalancer();
+            case POWER_OF_TWO_CHOICES:
+                return new PowerOfTwoChoicesLoadBalancer();
+            case EWMA:
+                return new EwmaLoadBalancer();
+            default:
+                try {
+                    Class<?> loadBalancerClass = Class.forName(name, true,
+                            Thread.currentThread().getContextClassLoader());
+                    return (LoadBalancer) loadBalancerClass.getConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException e) {
+                    log.severe("Cannot instantiate load balancer " + name + ", using " + ROUND_ROBIN + ". " +
+                            "Exception: " + e.toString());
+                    return new RoundRobinLoadBalancer();
+                }
+        }
+    }
+}
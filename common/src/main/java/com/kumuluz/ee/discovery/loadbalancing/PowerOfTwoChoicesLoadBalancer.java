@@ -0,0 +1,90 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.loadbalancing;
+
+import java.net.URL;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Least outstanding requests selection using the power of two choices: two distinct instances are sampled at random
+ * and the one with fewer requests in flight is picked.
+ *
+ * Requests in flight are counted per instance (protocol, host and port of its URL) and only for requests started
+ * through a {@link ServiceInstanceHandle}. Without handles, selection is uniformly random. Counters of instances
+ * without requests in flight are evicted after a minute without requests.
+ *
+ * @since 1.2.0
+ */
+public class PowerOfTwoChoicesLoadBalancer implements LoadBalancer {
+
+    private final InstanceStates<InstanceState> states = new InstanceStates<>(InstanceState::new,
+            TimeUnit.MINUTES.toNanos(1));
+
+    @Override
+    public Optional<URL> pick(Object serviceKey, URL[] instances) {
+
+        if (instances.length == 0) {
+            return Optional.empty();
+        }
+        if (instances.length == 1) {
+            return Optional.of(instances[0]);
+        }
+
+        states.evictIdle();
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(instances.length);
+        int second = random.nextInt(instances.length - 1);
+        if (second >= first) {
+            second++;
+        }
+
+        if (getRequestsInFlight(instances[second]) < getRequestsInFlight(instances[first])) {
+            return Optional.of(instances[second]);
+        } else {
+            return Optional.of(instances[first]);
+        }
+    }
+
+    @Override
+    public void onRequestStarted(URL instance) {
+        InstanceState state = states.getOrCreate(instance);
+        state.lastActivityNanos = System.nanoTime();
+        state.requestsInFlight.incrementAndGet();
+    }
+
+    @Override
+    public void onRequestCompleted(URL instance, long durationNanos, boolean failed) {
+        InstanceState state = states.get(instance);
+        if (state != null) {
+            state.lastActivityNanos = System.nanoTime();
+            state.requestsInFlight.updateAndGet(count -> (count > 0) ? count - 1 : 0);
+        }
+    }
+
+    private int getRequestsInFlight(URL instance) {
+        InstanceState state = states.get(instance);
+
+        return (state == null) ? 0 : state.requestsInFlight.get();
+    }
+}
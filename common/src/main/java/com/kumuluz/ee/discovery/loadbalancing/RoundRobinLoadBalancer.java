@@ -0,0 +1,66 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.loadbalancing;
+
+import java.net.URL;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Round-robin instance selection with an independent cursor for each service key.
+ *
+ * Cursors are atomic counters, so concurrent callers never serve the same position twice in a row and traffic to one
+ * service does not shift the cursor of another. The cursor is reduced modulo the current number of instances, which
+ * keeps the distribution fair when instances are added or removed.
+ *
+ * @since 1.2.0
+ */
+public class RoundRobinLoadBalancer implements LoadBalancer {
+
+    private final ConcurrentMap<Object, AtomicInteger> cursors = new ConcurrentHashMap<>();
+
+    /**
+     * Picks the next instance of the given service.
+     *
+     * @param serviceKey key identifying the service, must implement equals and hashCode
+     * @param instances  available instances
+     * @return next instance or empty, if no instances are available
+     */
+    @Override
+    public Optional<URL> pick(Object serviceKey, URL[] instances) {
+
+        if (instances.length == 0) {
+            return Optional.empty();
+        }
+        if (instances.length == 1) {
+            return Optional.of(instances[0]);
+        }
+
+        AtomicInteger cursor = cursors.get(serviceKey);
+        if (cursor == null) {
+            cursor = cursors.computeIfAbsent(serviceKey, k -> new AtomicInteger());
+        }
+
+        return Optional.of(instances[Math.floorMod(cursor.getAndIncrement(), instances.length)]);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.loadbalancing;
+
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.client.ClientResponseContext;
+import javax.ws.rs.client.ClientResponseFilter;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.util.logging.Logger;
+
+/**
+ * JAX-RS client filter, which reports response latency and server errors of a discovered service instance to the load
+ * balancers (see {@link LoadBalancers#report(URL, long, boolean)}). Responses with status 5xx are reported as failed.
+ *
+ * A single filter is registered on the shared client of each discovered service, so targets do not need their own
+ * configuration. The instance is read from the request property {@value #INSTANCE_PROPERTY}, if set, or derived from
+ * the scheme, host and port of the request URI otherwise.
+ *
+ * Requests, which do not receive a response (e.g. connection failures), are not seen by client filters and are
+ * therefore not reported.
+ *
+ * @since 1.2.0
+ */
+public class ServiceInstanceFeedbackFilter implements ClientRequestFilter, ClientResponseFilter {
+
+    private static final Logger log = Logger.getLogger(ServiceInstanceFeedbackFilter.class.getName());
+
+    /**
+     * Request property with the URL of the called instance. Needed only for instances, which are registered with a
+     * path in their URL.
+     */
+    public static final String INSTANCE_PROPERTY = ServiceInstanceFeedbackFilter.class.getName() + ".instance";
+
+    private static final String START_PROPERTY = ServiceInstanceFeedbackFilter.class.getName() + ".start";
+
+    @Override
+    public void filter(ClientRequestContext requestContext) {
+        requestContext.setProperty(START_PROPERTY, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext) {
+        Object start = requestContext.getProperty(START_PROPERTY);
+        if (start instanceof Long) {
+            URL serviceInstance = getServiceInstance(requestContext);
+            if (serviceInstance != null) {
+                LoadBalancers.report(serviceInstance, System.nanoTime() - (Long) start,
+                        responseContext.getStatus() >= 500);
+            }
+        }
+    }
+
+    private static URL getServiceInstance(ClientRequestContext requestContext) {
+        Object instance = requestContext.getProperty(INSTANCE_PROPERTY);
+        if (instance instanceof URL) {
+            return (URL) instance;
+        }
+
+        URI uri = requestContext.getUri();
+        try {
+            return new URL(uri.getScheme(), uri.getHost(), uri.getPort(), "");
+        } catch (MalformedURLException e) {
+            log.fine("Cannot determine service instance of " + uri + ": " + e.toString());
+            return null;
+        }
+    }
+}
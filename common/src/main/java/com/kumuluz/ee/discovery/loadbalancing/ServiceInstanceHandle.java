@@ -0,0 +1,79 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.loadbalancing;
+
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Handle of a request to a picked service instance. Reports the request outcome to the load balancer, which picked the
+ * instance, so it can account for outstanding requests and latency.
+ *
+ * Exactly one of {@link #complete()} or {@link #fail()} should be called when the request finishes; further calls are
+ * ignored. Closing the handle completes it successfully, if it was not completed before.
+ *
+ * @since 1.2.0
+ */
+public class ServiceInstanceHandle implements AutoCloseable {
+
+    private final URL url;
+    private final LoadBalancer loadBalancer;
+    private final long startNanos;
+    private final AtomicBoolean completed;
+
+    public ServiceInstanceHandle(URL url, LoadBalancer loadBalancer) {
+        this.url = url;
+        this.loadBalancer = loadBalancer;
+        this.completed = new AtomicBoolean(false);
+
+        loadBalancer.onRequestStarted(url);
+        this.startNanos = System.nanoTime();
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    /**
+     * Marks the request as successfully completed.
+     */
+    public void complete() {
+        finish(false);
+    }
+
+    /**
+     * Marks the request as failed.
+     */
+    public void fail() {
+        finish(true);
+    }
+
+    @Override
+    public void close() {
+        complete();
+    }
+
+    private void finish(boolean failed) {
+        if (completed.compareAndSet(false, true)) {
+            loadBalancer.onRequestCompleted(url, System.nanoTime() - startNanos, failed);
+        }
+    }
+}
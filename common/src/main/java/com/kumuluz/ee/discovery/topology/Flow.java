@@ -0,0 +1,83 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.topology;
+
+/**
+ * Interfaces for push-based streams with backpressure, equivalent to java.util.concurrent.Flow, which is not
+ * available on Java 8.
+ *
+ * @since 1.2.0
+ */
+public final class Flow {
+
+    private Flow() {
+    }
+
+    /**
+     * Producer of items, received by subscribers.
+     *
+     * @param <T> item type
+     */
+    public interface Publisher<T> {
+
+        /**
+         * Adds the subscriber. {@link Subscriber#onSubscribe(Subscription)} is called before any other method of the
+         * subscriber.
+         *
+         * @param subscriber subscriber
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * Receiver of items. Methods are invoked sequentially for each subscription and must not block.
+     *
+     * @param <T> item type
+     */
+    public interface Subscriber<T> {
+
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    /**
+     * Link between a publisher and a subscriber.
+     */
+    public interface Subscription {
+
+        /**
+         * Requests additional items. Non-positive values cancel the subscription and signal an error.
+         *
+         * @param n number of items
+         */
+        void request(long n);
+
+        /**
+         * Stops delivery of items.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.topology;
+
+import com.kumuluz.ee.discovery.utils.ServiceKey;
+
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Publisher of topology events of a single service key.
+ *
+ * Events are snapshots, so only the latest undelivered event is kept for each subscriber; events, published while a
+ * subscriber has no outstanding demand, are coalesced. New subscribers receive the latest event first. Events are
+ * delivered on the given executor, never on the thread which published them.
+ *
+ * @since 1.2.0
+ */
+class ServiceTopologyPublisher implements Flow.Publisher<TopologyEvent> {
+
+    private static final Logger log = Logger.getLogger(ServiceTopologyPublisher.class.getName());
+
+    private final ServiceKey serviceKey;
+    private final Executor executor;
+    private final AtomicReference<TopologyEvent> latest;
+    private final List<TopologySubscription> subscriptions;
+
+    ServiceTopologyPublisher(ServiceKey serviceKey, Executor executor) {
+        this.serviceKey = serviceKey;
+        this.executor = executor;
+        this.latest = new AtomicReference<>();
+        this.subscriptions = new CopyOnWriteArrayList<>();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TopologyEvent> subscriber) {
+        TopologySubscription subscription = new TopologySubscription(subscriber);
+        subscriptions.add(subscription);
+
+        subscriber.onSubscribe(subscription);
+
+        TopologyEvent event = latest.get();
+        if (event != null) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Publishes the instances, if they differ from the last published instances.
+     */
+    void publish(URL[] instances) {
+        TopologyEvent previous = latest.get();
+        if (previous != null && sameInstances(previous.getInstances(), instances)) {
+            return;
+        }
+
+        TopologyEvent event = new TopologyEvent(serviceKey, instances);
+        latest.set(event);
+
+        for (TopologySubscription subscription : subscriptions) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Publishes the initial instances, unless newer instances were already published.
+     */
+    void publishInitial(URL[] instances) {
+        TopologyEvent event = new TopologyEvent(serviceKey, instances);
+        if (latest.compareAndSet(null, event)) {
+            for (TopologySubscription subscription : subscriptions) {
+                subscription.offer(event);
+            }
+        }
+    }
+
+    private static boolean sameInstances(List<URL> instances, URL[] other) {
+        if (instances.size() != other.length) {
+            return false;
+        }
+        for (int i = 0; i < other.length; i++) {
+            // compare string forms, URL.equals resolves host names
+            if (!instances.get(i).toString().equals(other[i].toString())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private class TopologySubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super TopologyEvent> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicReference<TopologyEvent> pending = new AtomicReference<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private volatile boolean cancelled;
+
+        TopologySubscription(Flow.Subscriber<? super TopologyEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Requested number of events must be positive."));
+                return;
+            }
+
+            demand.getAndUpdate(d -> (d + n < 0) ? Long.MAX_VALUE : d + n);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+        }
+
+        void offer(TopologyEvent event) {
+            pending.set(event);
+            schedule();
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            int missed = 1;
+            do {
+                if (cancelled) {
+                    return;
+                }
+
+                if (demand.get() > 0) {
+                    TopologyEvent event = pending.getAndSet(null);
+                    if (event != null) {
+                        demand.getAndUpdate(d -> (d == Long.MAX_VALUE) ? d : d - 1);
+                        try {
+                            subscriber.onNext(event);
+                        } catch (RuntimeException e) {
+                            log.severe("Topology subscriber failed, cancelling subscription. Exception: " +
+                                    e.toString());
+                            cancel();
+                            return;
+                        }
+                    }
+                }
+
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
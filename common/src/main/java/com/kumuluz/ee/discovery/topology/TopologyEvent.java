@@ -0,0 +1,63 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.topology;
+
+import com.kumuluz.ee.discovery.utils.ServiceKey;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Snapshot of the registered instances of a service, published when the instances change.
+ *
+ * @since 1.2.0
+ */
+public class TopologyEvent {
+
+    private final ServiceKey serviceKey;
+    private final List<URL> instances;
+
+    public TopologyEvent(ServiceKey serviceKey, URL[] instances) {
+        this.serviceKey = serviceKey;
+        this.instances = Collections.unmodifiableList(Arrays.asList(instances.clone()));
+    }
+
+    /**
+     * @return key with service name, version, environment and service type
+     */
+    public ServiceKey getServiceKey() {
+        return serviceKey;
+    }
+
+    /**
+     * @return direct URLs of the registered instances, empty if no instances are registered
+     */
+    public List<URL> getInstances() {
+        return instances;
+    }
+
+    @Override
+    public String toString() {
+        return "TopologyEvent{" + serviceKey + ", instances=" + instances + "}";
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.topology;
+
+import com.kumuluz.ee.discovery.enums.ServiceType;
+import com.kumuluz.ee.discovery.utils.ServiceKey;
+
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Topology publishers of a discovery implementation, one for each subscribed service key. Publishing to a service
+ * without subscribers does not allocate.
+ *
+ * @since 1.2.0
+ */
+public class TopologyPublishers {
+
+    private final ConcurrentMap<ServiceKey, ServiceTopologyPublisher> publishers;
+    private final Executor executor;
+
+    public TopologyPublishers() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public TopologyPublishers(Executor executor) {
+        this.publishers = new ConcurrentHashMap<>();
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the publisher for the service key, creating it if needed.
+     *
+     * @param serviceKey       key with service name, version, environment and service type
+     * @param initialInstances supplier of the current instances, called after the publisher is created, so updates
+     *                         published in the meantime are not lost
+     * @return publisher
+     */
+    public Flow.Publisher<TopologyEvent> getPublisher(ServiceKey serviceKey,
+                                                      Supplier<URL[]> initialInstances) {
+        ServiceTopologyPublisher publisher = publishers.computeIfAbsent(serviceKey,
+                k -> new ServiceTopologyPublisher(k, executor));
+        publisher.publishInitial(initialInstances.get());
+
+        return publisher;
+    }
+
+    /**
+     * Publishes instances of the service to the subscribed service keys.
+     *
+     * @param serviceName service name
+     * @param version     service version or null, to publish to all versions
+     * @param environment service environment
+     * @param instances   function returning instances for the version and service type of a subscribed key
+     */
+    public void publish(String serviceName, String version, String environment,
+                        BiFunction<String, ServiceType, URL[]> instances) {
+        if (publishers.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<ServiceKey, ServiceTopologyPublisher> entry : publishers.entrySet()) {
+            ServiceKey serviceKey = entry.getKey();
+            if (serviceKey.isForService(serviceName, environment) &&
+                    (version == null || version.equals(serviceKey.getVersion()))) {
+                entry.getValue().publish(instances.apply(serviceKey.getVersion(), serviceKey.getServiceType()));
+            }
+        }
+    }
+}
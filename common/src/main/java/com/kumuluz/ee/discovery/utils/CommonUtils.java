@@ -23,14 +23,10 @@ package com.kumuluz.ee.discovery.utils;
 import com.kumuluz.ee.common.config.EeConfig;
 import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
 import com.kumuluz.ee.discovery.enums.ServiceType;
-import com.vdurmont.semver4j.Requirement;
-import com.vdurmont.semver4j.Semver;
-import com.vdurmont.semver4j.SemverException;
+import com.kumuluz.ee.discovery.loadbalancing.RoundRobinLoadBalancer;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
 
@@ -43,72 +39,30 @@ import java.util.Optional;
  */
 public class CommonUtils {
 
-    private static int lastInstanceServedIndex;
+    private static final RoundRobinLoadBalancer roundRobinLoadBalancer = new RoundRobinLoadBalancer();
 
+    /**
+     * Resolves the version or NPM version range to the highest registered version satisfying it.
+     *
+     * @deprecated resolutions are not cached; use {@link DiscoveryUtil#getServiceInstance(String, String, String)},
+     * which resolves version ranges with the cached {@link VersionResolver} of the discovery implementation
+     */
+    @Deprecated
     public static String determineVersion(DiscoveryUtil discoveryUtil, String serviceName, String version,
                                           String environment, ServiceType serviceType) {
 
-        // check, if version has special characters (*, ^, ~)
-        // if true, use get getServiceVersions to get appropriate version
-        // return version
-
-        Requirement versionRequirement;
-        try {
-            versionRequirement = Requirement.buildNPM(version);
-        } catch (SemverException se) {
-            return version;
-        }
-
-        if (!version.contains("*") && !version.contains("x")) {
-            try {
-                new Semver(version, Semver.SemverType.NPM);
-                return version;
-            } catch (SemverException ignored) {
-            }
-        }
-
-        Optional<List<String>> versionsOpt = discoveryUtil.getServiceVersions(serviceName, environment, serviceType);
-
-        if (versionsOpt.isPresent()) {
-            List<String> versions = versionsOpt.get();
-            List<Semver> versionsSemver = new LinkedList<>();
-
-            for (String versionString : versions) {
-                Semver listVersion;
-                try {
-                    listVersion = new Semver(versionString, Semver.SemverType.NPM);
-                } catch (SemverException se) {
-                    continue;
-                }
-
-                versionsSemver.add(listVersion);
-            }
-
-            Collections.sort(versionsSemver);
-
-            for (int i = versionsSemver.size() - 1; i >= 0; i--) {
-                if (versionsSemver.get(i).satisfies(versionRequirement)) {
-                    return versionsSemver.get(i).getOriginalValue();
-                }
-            }
-        }
-
-        return version;
+        return new VersionResolver(discoveryUtil).resolve(serviceName, version, environment, serviceType);
     }
 
+    /**
+     * Picks an instance using a single cursor, shared by all callers.
+     *
+     * @deprecated use {@link DiscoveryUtil#getServiceInstance(String, String, String)} or a load balancer from
+     * {@link com.kumuluz.ee.discovery.loadbalancing.LoadBalancers}, which keep a separate cursor for each service
+     */
+    @Deprecated
     public static Optional<URL> pickServiceInstanceRoundRobin(List<URL> serviceInstances) {
-
-        if (!serviceInstances.isEmpty()) {
-            int index = 0;
-            if (serviceInstances.size() >= lastInstanceServedIndex + 2) {
-                index = lastInstanceServedIndex + 1;
-            }
-            lastInstanceServedIndex = index;
-
-            return Optional.of(serviceInstances.get(index));
-        } else {
-            return Optional.empty();
-        }
+        return roundRobinLoadBalancer.pick(CommonUtils.class, serviceInstances.toArray(new URL[0]));
     }
 
     public static String getBaseUrl(ServiceType serviceType) {
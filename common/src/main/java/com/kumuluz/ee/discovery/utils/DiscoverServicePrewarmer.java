@@ -0,0 +1,122 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.discovery.annotations.DiscoverService;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * Resolves all services, injected with the DiscoverService annotation, when the application is initialized. Lookups
+ * are performed in parallel with the asynchronous discovery API, so caches and watches are ready before the first
+ * request.
+ *
+ * Configured with kumuluzee.discovery.prewarm.enabled (default true), kumuluzee.discovery.prewarm.parallelism
+ * (maximum number of concurrent lookups, default 4) and kumuluzee.discovery.prewarm.timeout-ms (maximum time
+ * initialization waits for the lookups, default 10000).
+ *
+ * @since 1.2.0
+ */
+@ApplicationScoped
+public class DiscoverServicePrewarmer {
+
+    private static final Logger log = Logger.getLogger(DiscoverServicePrewarmer.class.getName());
+
+    @Inject
+    private DiscoveryUtil discoveryUtil;
+
+    @Inject
+    private DiscoverServiceCdiExtension discoverServiceCdiExtension;
+
+    public void cdiInitialized(@Observes @Initialized(ApplicationScoped.class) Object init) {
+
+        ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+
+        if (!configurationUtil.getBoolean("kumuluzee.discovery.prewarm.enabled").orElse(true)) {
+            return;
+        }
+
+        Set<DiscoverService> discoverServices = discoverServiceCdiExtension.getDiscoverServices();
+        if (discoverServices.isEmpty()) {
+            return;
+        }
+
+        int parallelism = Math.max(1, configurationUtil.getInteger("kumuluzee.discovery.prewarm.parallelism")
+                .orElse(4));
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(
+                configurationUtil.getInteger("kumuluzee.discovery.prewarm.timeout-ms").orElse(10000));
+
+        log.info("Resolving " + discoverServices.size() + " discovered services with parallelism " + parallelism +
+                ".");
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        Semaphore permits = new Semaphore(parallelism);
+        List<CompletableFuture<?>> lookups = new ArrayList<>();
+
+        try {
+            for (DiscoverService discoverService : discoverServices) {
+                if (!permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new TimeoutException();
+                }
+
+                String environment = DiscoverServiceProducer.getEnvironment(discoverService);
+                CompletableFuture<?> lookup;
+                try {
+                    lookup = discoveryUtil.getServiceInstanceAsync(discoverService.value(),
+                            discoverService.version(), environment, discoverService.accessType(),
+                            discoverService.serviceType()).toCompletableFuture();
+                } catch (RuntimeException e) {
+                    lookup = new CompletableFuture<>();
+                    lookup.completeExceptionally(e);
+                }
+                lookup.whenComplete((url, e) -> {
+                    permits.release();
+                    if (e != null) {
+                        log.warning("Cannot resolve service " + discoverService.value() + ": " + e.toString());
+                    }
+                });
+                lookups.add(lookup);
+            }
+
+            CompletableFuture.allOf(lookups.toArray(new CompletableFuture[0]))
+                    .get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warning("Resolving discovered services did not finish in time, continuing initialization.");
+        } catch (ExecutionException e) {
+            // failures are already logged for each lookup
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
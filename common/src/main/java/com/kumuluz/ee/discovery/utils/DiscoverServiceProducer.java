@@ -26,13 +26,13 @@ import com.kumuluz.ee.discovery.annotations.DiscoverService;
 import com.kumuluz.ee.discovery.enums.AccessType;
 import com.kumuluz.ee.discovery.enums.ServiceType;
 import com.kumuluz.ee.discovery.exceptions.ServiceNotFoundException;
+import com.kumuluz.ee.discovery.loadbalancing.LoadBalancers;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Produces;
 import javax.enterprise.inject.spi.InjectionPoint;
 import javax.inject.Inject;
 import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.WebTarget;
 import java.net.URISyntaxException;
 import java.net.URL;
@@ -53,6 +53,9 @@ public class DiscoverServiceProducer {
     @Inject
     private DiscoveryUtil discoveryUtil;
 
+    @Inject
+    private DiscoveryClientRegistry discoveryClientRegistry;
+
     @Produces
     @DiscoverService
     public Optional<URL> produceUrlOpt(InjectionPoint injectionPoint) {
@@ -76,7 +79,8 @@ public class DiscoverServiceProducer {
 
         Optional<URL> url = getUrl(injectionPoint);
         if (url.isPresent()) {
-            Client client = ClientBuilder.newClient();
+            Client client = discoveryClientRegistry.getClient(injectionPoint.getAnnotated()
+                    .getAnnotation(DiscoverService.class).value());
             try {
                 return Optional.of(client.target(url.get().toURI()));
             } catch (URISyntaxException e) {
@@ -88,6 +92,18 @@ public class DiscoverServiceProducer {
 
     }
 
+    @Produces
+    @DiscoverService
+    public DiscoveredService produceDiscoveredService(InjectionPoint injectionPoint) {
+
+        DiscoverService discoverService = injectionPoint.getAnnotated().getAnnotation(DiscoverService.class);
+
+        return new DiscoveredService(discoveryUtil, discoveryClientRegistry.getClient(discoverService.value()),
+                discoverService.value(), discoverService.version(), getEnvironment(discoverService),
+                discoverService.accessType(), discoverService.serviceType(),
+                LoadBalancers.get(discoverService.loadBalancer()));
+    }
+
     @Produces
     @DiscoverService
     public URL produceUrl(InjectionPoint injectionPoint) {
@@ -121,6 +137,23 @@ public class DiscoverServiceProducer {
         }
     }
 
+    /**
+     * Returns environment of the discovered service, defaulting to the environment of this service.
+     */
+    static String getEnvironment(DiscoverService discoverService) {
+        return discoverService.environment().isEmpty() ? getEnvironment() : discoverService.environment();
+    }
+
+    private static String getEnvironment() {
+        String environment = EeConfig.getInstance().getEnv().getName();
+
+        if (environment == null || environment.isEmpty()) {
+            environment = ConfigurationUtil.getInstance().get("kumuluzee.env").orElse("dev");
+        }
+
+        return environment;
+    }
+
     private Optional<URL> getUrl(InjectionPoint injectionPoint) {
 
         String serviceName = injectionPoint.getAnnotated().getAnnotation(DiscoverService.class).value();
@@ -128,19 +161,17 @@ public class DiscoverServiceProducer {
         String version = injectionPoint.getAnnotated().getAnnotation(DiscoverService.class).version();
         AccessType accessType = injectionPoint.getAnnotated().getAnnotation(DiscoverService.class).accessType();
         ServiceType serviceType = injectionPoint.getAnnotated().getAnnotation(DiscoverService.class).serviceType();
+        String loadBalancer = injectionPoint.getAnnotated().getAnnotation(DiscoverService.class).loadBalancer();
 
         if (environment.isEmpty()) {
-            environment = EeConfig.getInstance().getEnv().getName();
-
-            if (environment == null || environment.isEmpty()) {
-                environment = ConfigurationUtil.getInstance().get("kumuluzee.env").orElse("dev");
-            }
+            environment = getEnvironment();
         }
 
         log.info("Initializing field for service: " + serviceName + " version: " + version + " environment: " +
                 environment);
 
-        return discoveryUtil.getServiceInstance(serviceName, version, environment, accessType, serviceType);
+        return discoveryUtil.getServiceInstance(serviceName, version, environment, accessType, serviceType,
+                LoadBalancers.get(loadBalancer));
 
     }
 
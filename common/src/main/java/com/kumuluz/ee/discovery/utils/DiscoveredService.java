@@ -0,0 +1,139 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import com.kumuluz.ee.discovery.enums.AccessType;
+import com.kumuluz.ee.discovery.enums.ServiceType;
+import com.kumuluz.ee.discovery.exceptions.ServiceNotFoundException;
+import com.kumuluz.ee.discovery.loadbalancing.LoadBalancer;
+import com.kumuluz.ee.discovery.loadbalancing.ServiceInstanceHandle;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.WebTarget;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Handle of a discovered service, injectable with the DiscoverService annotation. Unlike injected URLs, an instance
+ * is picked from the discovery cache on every call, so long-lived beans spread load across instances and follow
+ * instance changes without being re-injected.
+ *
+ * @since 1.2.0
+ */
+public class DiscoveredService implements Supplier<URL> {
+
+    private static final Logger log = Logger.getLogger(DiscoveredService.class.getName());
+
+    private final DiscoveryUtil discoveryUtil;
+    private final Client client;
+    private final String serviceName;
+    private final String version;
+    private final String environment;
+    private final AccessType accessType;
+    private final ServiceType serviceType;
+    private final LoadBalancer loadBalancer;
+
+    public DiscoveredService(DiscoveryUtil discoveryUtil, Client client, String serviceName, String version,
+                             String environment, AccessType accessType, ServiceType serviceType,
+                             LoadBalancer loadBalancer) {
+        this.discoveryUtil = discoveryUtil;
+        this.client = client;
+        this.serviceName = serviceName;
+        this.version = version;
+        this.environment = environment;
+        this.accessType = accessType;
+        this.serviceType = serviceType;
+        this.loadBalancer = loadBalancer;
+    }
+
+    /**
+     * Picks an instance of the service.
+     *
+     * @return instance URL
+     * @throws ServiceNotFoundException if no instances are available
+     */
+    @Override
+    public URL get() {
+        return getUrl().orElseThrow(() -> new ServiceNotFoundException("Service not found."));
+    }
+
+    /**
+     * Picks an instance of the service.
+     *
+     * @return instance URL or empty, if no instances are available
+     */
+    public Optional<URL> getUrl() {
+        return discoveryUtil.getServiceInstance(serviceName, version, environment, accessType, serviceType,
+                loadBalancer);
+    }
+
+    /**
+     * Picks an instance of the service and returns a target, which reports responses to the load balancers.
+     *
+     * @return target or empty, if no instances are available
+     */
+    public Optional<WebTarget> getWebTarget() {
+        Optional<URL> url = getUrl();
+        if (url.isPresent()) {
+            try {
+                return Optional.of(client.target(url.get().toURI()));
+            } catch (URISyntaxException e) {
+                log.severe("Invalid service URL: " + e.toString());
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Picks an instance of the service and starts a request to it (see
+     * {@link DiscoveryUtil#acquireServiceInstance(String, String, String, AccessType, ServiceType, LoadBalancer)}).
+     *
+     * @return handle of the started request or empty, if no instances are available
+     */
+    public Optional<ServiceInstanceHandle> acquire() {
+        return discoveryUtil.acquireServiceInstance(serviceName, version, environment, accessType, serviceType,
+                loadBalancer);
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    public AccessType getAccessType() {
+        return accessType;
+    }
+
+    public ServiceType getServiceType() {
+        return serviceType;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.discovery.loadbalancing.ServiceInstanceFeedbackFilter;
+
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Registry of JAX-RS clients, shared by all WebTargets of a discovered service, so connections are reused across
+ * injections. Each client reports responses to the load balancers with a {@link ServiceInstanceFeedbackFilter}.
+ * Clients are closed on shutdown.
+ *
+ * Clients are configured with the following keys, which can be overridden for a single service with the prefix
+ * kumuluzee.discovery.client.services.[service-name] instead of kumuluzee.discovery.client:
+ * <ul>
+ * <li>kumuluzee.discovery.client.connect-timeout-ms - connect timeout</li>
+ * <li>kumuluzee.discovery.client.read-timeout-ms - read timeout</li>
+ * <li>kumuluzee.discovery.client.properties - map of properties, passed to the client builder, e.g. connection pool
+ * size and keep-alive settings of the JAX-RS implementation's connector</li>
+ * </ul>
+ *
+ * @since 1.2.0
+ */
+@ApplicationScoped
+public class DiscoveryClientRegistry {
+
+    private static final Logger log = Logger.getLogger(DiscoveryClientRegistry.class.getName());
+
+    private static final String CONFIG_PREFIX = "kumuluzee.discovery.client";
+
+    private final ConcurrentMap<String, Client> clients = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the shared client for the service, creating it if needed.
+     *
+     * @param serviceName service name
+     * @return client
+     */
+    public Client getClient(String serviceName) {
+        Client client = clients.get(serviceName);
+        if (client == null) {
+            client = clients.computeIfAbsent(serviceName, this::createClient);
+        }
+
+        return client;
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Client client : clients.values()) {
+            try {
+                client.close();
+            } catch (RuntimeException e) {
+                log.warning("Cannot close client: " + e.toString());
+            }
+        }
+        clients.clear();
+    }
+
+    private Client createClient(String serviceName) {
+        ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+        String servicePrefix = CONFIG_PREFIX + ".services." + serviceName;
+
+        ClientBuilder clientBuilder = ClientBuilder.newBuilder();
+
+        Optional<Integer> connectTimeout = getInteger(configurationUtil, servicePrefix, "connect-timeout-ms");
+        if (connectTimeout.isPresent()) {
+            clientBuilder.connectTimeout(connectTimeout.get(), TimeUnit.MILLISECONDS);
+        }
+
+        Optional<Integer> readTimeout = getInteger(configurationUtil, servicePrefix, "read-timeout-ms");
+        if (readTimeout.isPresent()) {
+            clientBuilder.readTimeout(readTimeout.get(), TimeUnit.MILLISECONDS);
+        }
+
+        // global properties first, so service properties override them
+        setProperties(configurationUtil, clientBuilder, CONFIG_PREFIX + ".properties");
+        setProperties(configurationUtil, clientBuilder, servicePrefix + ".properties");
+
+        // registered once on the client, since registering providers on a target copies the client configuration
+        clientBuilder.register(new ServiceInstanceFeedbackFilter());
+
+        return clientBuilder.build();
+    }
+
+    private static Optional<Integer> getInteger(ConfigurationUtil configurationUtil, String servicePrefix,
+                                                String key) {
+        Optional<Integer> value = configurationUtil.getInteger(servicePrefix + "." + key);
+        if (value.isPresent()) {
+            return value;
+        }
+
+        return configurationUtil.getInteger(CONFIG_PREFIX + "." + key);
+    }
+
+    private static void setProperties(ConfigurationUtil configurationUtil, ClientBuilder clientBuilder,
+                                      String prefix) {
+        Optional<List<String>> propertyKeys = configurationUtil.getMapKeys(prefix);
+        if (propertyKeys.isPresent()) {
+            for (String propertyKey : propertyKeys.get()) {
+                Optional<String> value = configurationUtil.get(prefix + "." + propertyKey);
+                if (value.isPresent()) {
+                    clientBuilder.property(propertyKey, value.get());
+                }
+            }
+        }
+    }
+}
@@ -22,10 +22,17 @@ package com.kumuluz.ee.discovery.utils;
 
 import com.kumuluz.ee.discovery.enums.AccessType;
 import com.kumuluz.ee.discovery.enums.ServiceType;
+import com.kumuluz.ee.discovery.loadbalancing.LoadBalancer;
+import com.kumuluz.ee.discovery.loadbalancing.LoadBalancers;
+import com.kumuluz.ee.discovery.loadbalancing.ServiceInstanceHandle;
+import com.kumuluz.ee.discovery.topology.Flow;
+import com.kumuluz.ee.discovery.topology.TopologyEvent;
 
 import java.net.URL;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Interface for service discovery.
@@ -101,6 +108,130 @@ public interface DiscoveryUtil {
      */
     Optional<URL> getServiceInstance(String serviceName, String version, String environment);
 
+    /**
+     * Return service instance, picked by the given load balancer.
+     *
+     * @param serviceName  service name
+     * @param version      service version
+     * @param environment  service environment
+     * @param accessType   access type: direct or gateway
+     * @param serviceType  service type
+     * @param loadBalancer load balancer, used to pick the instance
+     * @return picked service instance or empty, if no instances are available
+     */
+    default Optional<URL> getServiceInstance(String serviceName, String version, String environment,
+                                             AccessType accessType, ServiceType serviceType,
+                                             LoadBalancer loadBalancer) {
+        Optional<List<URL>> serviceInstances = getServiceInstances(serviceName, version, environment, accessType,
+                serviceType);
+
+        return serviceInstances.flatMap(instances -> loadBalancer.pick(
+                ServiceKey.of(serviceName, version, environment, serviceType),
+                instances.toArray(new URL[instances.size()])));
+    }
+
+    /**
+     * Return service instance without blocking the caller.
+     *
+     * @param serviceName service name
+     * @param version     service version
+     * @param environment service environment
+     * @param accessType  access type: direct or gateway
+     * @param serviceType service type
+     * @return stage, completed with the service instance or empty, if no instances are available
+     */
+    default CompletionStage<Optional<URL>> getServiceInstanceAsync(String serviceName, String version,
+                                                                   String environment, AccessType accessType,
+                                                                   ServiceType serviceType) {
+        return getServiceInstanceAsync(serviceName, version, environment, accessType, serviceType,
+                LoadBalancers.getDefault());
+    }
+
+    /**
+     * Return service instance, picked by the given load balancer, without blocking the caller. Implementations
+     * should complete the stage from the callbacks of their registry client; the default implementation performs the
+     * blocking lookup in the common fork join pool.
+     *
+     * @param serviceName  service name
+     * @param version      service version
+     * @param environment  service environment
+     * @param accessType   access type: direct or gateway
+     * @param serviceType  service type
+     * @param loadBalancer load balancer, used to pick the instance
+     * @return stage, completed with the picked service instance or empty, if no instances are available
+     */
+    default CompletionStage<Optional<URL>> getServiceInstanceAsync(String serviceName, String version,
+                                                                   String environment, AccessType accessType,
+                                                                   ServiceType serviceType,
+                                                                   LoadBalancer loadBalancer) {
+        return CompletableFuture.supplyAsync(() -> getServiceInstance(serviceName, version, environment, accessType,
+                serviceType, loadBalancer));
+    }
+
+    /**
+     * Picks a service instance with the given load balancer and starts a request to it. The returned handle must be
+     * completed or closed when the request finishes.
+     *
+     * @param serviceName  service name
+     * @param version      service version
+     * @param environment  service environment
+     * @param accessType   access type: direct or gateway
+     * @param serviceType  service type
+     * @param loadBalancer load balancer, used to pick the instance
+     * @return handle of the started request or empty, if no instances are available
+     */
+    default Optional<ServiceInstanceHandle> acquireServiceInstance(String serviceName, String version,
+                                                                   String environment, AccessType accessType,
+                                                                   ServiceType serviceType,
+                                                                   LoadBalancer loadBalancer) {
+        return getServiceInstance(serviceName, version, environment, accessType, serviceType, loadBalancer)
+                .map(url -> new ServiceInstanceHandle(url, loadBalancer));
+    }
+
+    /**
+     * Reports an observed response of a service instance, so latency-aware load balancers can prefer faster instances
+     * and avoid failing ones.
+     *
+     * @param serviceInstance instance URL, as returned by service discovery
+     * @param durationNanos   duration of the request in nanoseconds
+     * @param failed          true, if the request failed
+     */
+    default void reportServiceInstanceResponse(URL serviceInstance, long durationNanos, boolean failed) {
+        LoadBalancers.report(serviceInstance, durationNanos, failed);
+    }
+
+    /**
+     * Returns publisher of instance changes of a service. Each event is a snapshot of the direct instance URLs;
+     * subscribers first receive the current instances and events are coalesced, while subscribers have no
+     * outstanding demand. Version ranges are resolved once, when this method is called. Implementations, which do not
+     * support topology changes, return a publisher, which signals {@link UnsupportedOperationException} to each
+     * subscriber.
+     *
+     * @param serviceName service name
+     * @param version     service version
+     * @param environment service environment
+     * @param serviceType service type
+     * @return publisher of topology events
+     */
+    default Flow.Publisher<TopologyEvent> getServiceTopology(String serviceName, String version, String environment,
+                                                             ServiceType serviceType) {
+        String message = "Topology changes are not supported by " + getClass().getName();
+
+        return subscriber -> {
+            subscriber.onSubscribe(new Flow.Subscription() {
+
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new UnsupportedOperationException(message));
+        };
+    }
+
     Optional<List<String>> getServiceVersions(String serviceName, String environment, ServiceType serviceType);
 
     void disableServiceInstance(String serviceName, String version, String environment, URL url, ServiceType serviceType);
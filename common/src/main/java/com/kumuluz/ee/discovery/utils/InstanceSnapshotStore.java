@@ -0,0 +1,237 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.discovery.enums.ServiceType;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * Local file with the last known instances of discovered services, used when the registry cannot be reached at
+ * startup.
+ *
+ * The snapshot is written periodically in a compact binary format, only when it changes. It is written to a temporary
+ * file, which replaces the snapshot with an atomic move, so a crash never leaves a partially written snapshot.
+ * Enabled with kumuluzee.discovery.snapshot.path, written every kumuluzee.discovery.snapshot.interval-s seconds
+ * (default 30).
+ *
+ * @since 1.2.0
+ */
+public class InstanceSnapshotStore {
+
+    private static final Logger log = Logger.getLogger(InstanceSnapshotStore.class.getName());
+
+    private static final int MAGIC = 0x4b444953;
+    private static final int FORMAT_VERSION = 1;
+
+    // orders keys by their components; keys in a snapshot always have all components set
+    private static final Comparator<ServiceKey> SERVICE_KEY_ORDER = Comparator
+            .comparing(ServiceKey::getServiceName)
+            .thenComparing(ServiceKey::getVersion)
+            .thenComparing(ServiceKey::getEnvironment)
+            .thenComparing(ServiceKey::getServiceType);
+
+    private final Path path;
+    private byte[] lastWritten;
+
+    public InstanceSnapshotStore(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the snapshot store, if it is enabled in configuration.
+     *
+     * @return snapshot store or empty, if it is not enabled
+     */
+    public static Optional<InstanceSnapshotStore> fromConfiguration() {
+        return ConfigurationUtil.getInstance().get("kumuluzee.discovery.snapshot.path")
+                .filter(p -> !p.isEmpty())
+                .map(p -> new InstanceSnapshotStore(Paths.get(p)));
+    }
+
+    /**
+     * Reads the snapshot.
+     *
+     * @return instance URLs by service name, version, environment and service type; empty if the snapshot does not
+     * exist or cannot be read
+     */
+    public Map<ServiceKey, URL[]> load() {
+        Map<ServiceKey, URL[]> instances = new HashMap<>();
+        if (!Files.exists(path)) {
+            return instances;
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                log.warning("Unsupported instance snapshot format in " + path + ", ignoring snapshot.");
+                return instances;
+            }
+
+            int serviceCount = in.readInt();
+            for (int i = 0; i < serviceCount; i++) {
+                String serviceName = in.readUTF();
+                String version = in.readUTF();
+                String environment = in.readUTF();
+                ServiceType serviceType = ServiceType.valueOf(in.readUTF());
+
+                URL[] urls = new URL[in.readInt()];
+                for (int j = 0; j < urls.length; j++) {
+                    urls[j] = new URL(in.readUTF());
+                }
+
+                instances.put(ServiceKey.of(serviceName, version, environment, serviceType), urls);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            log.warning("Cannot read instance snapshot from " + path + ": " + e.toString());
+            instances.clear();
+            return instances;
+        }
+
+        log.info("Loaded last known instances of " + instances.size() + " services from " + path + ".");
+
+        return instances;
+    }
+
+    /**
+     * Writes the snapshot, if it differs from the last written snapshot.
+     *
+     * @param instances instance URLs by service name, version, environment and service type
+     */
+    public synchronized void write(Map<ServiceKey, URL[]> instances) {
+        byte[] snapshot;
+        try {
+            snapshot = serialize(instances);
+        } catch (IOException e) {
+            log.severe("Cannot serialize instance snapshot: " + e.toString());
+            return;
+        }
+
+        if (Arrays.equals(snapshot, lastWritten)) {
+            return;
+        }
+
+        Path directory = path.toAbsolutePath().getParent();
+        Path temporaryPath = null;
+        try {
+            Files.createDirectories(directory);
+            temporaryPath = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            lastWritten = snapshot;
+        } catch (IOException e) {
+            log.warning("Cannot write instance snapshot to " + path + ": " + e.toString());
+            if (temporaryPath != null) {
+                try {
+                    Files.deleteIfExists(temporaryPath);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedules periodic writes of the snapshot.
+     *
+     * @param scheduler scheduler, used for writes
+     * @param instances supplier of current instances
+     */
+    public void schedule(ScheduledExecutorService scheduler, Supplier<Map<ServiceKey, URL[]>> instances) {
+        int interval = ConfigurationUtil.getInstance().getInteger("kumuluzee.discovery.snapshot.interval-s")
+                .orElse(30);
+
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                write(instances.get());
+            } catch (RuntimeException e) {
+                log.severe("Cannot write instance snapshot: " + e.toString());
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    private static byte[] serialize(Map<ServiceKey, URL[]> instances) throws IOException {
+        // sort services and their instances, so unchanged instances produce identical snapshots
+        Map<ServiceKey, URL[]> sorted = new TreeMap<>(SERVICE_KEY_ORDER);
+        for (Map.Entry<ServiceKey, URL[]> entry : instances.entrySet()) {
+            ServiceKey serviceKey = entry.getKey();
+            if (serviceKey.getServiceName() != null && serviceKey.getVersion() != null &&
+                    serviceKey.getEnvironment() != null && serviceKey.getServiceType() != null &&
+                    entry.getValue().length > 0) {
+                sorted.put(serviceKey, entry.getValue());
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(sorted.size());
+            for (Map.Entry<ServiceKey, URL[]> entry : sorted.entrySet()) {
+                ServiceKey serviceKey = entry.getKey();
+                out.writeUTF(serviceKey.getServiceName());
+                out.writeUTF(serviceKey.getVersion());
+                out.writeUTF(serviceKey.getEnvironment());
+                out.writeUTF(serviceKey.getServiceType().name());
+
+                // instance order follows the registry caches, which are hash maps
+                String[] urls = new String[entry.getValue().length];
+                for (int i = 0; i < urls.length; i++) {
+                    urls[i] = entry.getValue()[i].toString();
+                }
+                Arrays.sort(urls);
+
+                out.writeInt(urls.length);
+                for (String url : urls) {
+                    out.writeUTF(url);
+                }
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+}
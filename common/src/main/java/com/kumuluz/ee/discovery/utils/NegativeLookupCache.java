@@ -0,0 +1,92 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers lookups, which found nothing in the registry, for a limited time, so that repeated lookups of a missing
+ * service do not reach the registry on every call. Entries expire after the TTL, configured with
+ * <code>kumuluzee.discovery.negative-cache.ttl-ms</code>, or are invalidated earlier, when a watch reports the key.
+ *
+ * @param <K> key type
+ * @since 1.2.0
+ */
+public class NegativeLookupCache<K> {
+
+    private static final long DEFAULT_TTL_MS = 5000;
+
+    private final long ttlNanos;
+    private final ConcurrentMap<K, Long> expirations = new ConcurrentHashMap<>();
+
+    public NegativeLookupCache(long ttlMs) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(ttlMs, 0));
+    }
+
+    public static <K> NegativeLookupCache<K> fromConfiguration() {
+        return new NegativeLookupCache<>(ConfigurationUtil.getInstance()
+                .getInteger("kumuluzee.discovery.negative-cache.ttl-ms").map(Integer::longValue)
+                .orElse(DEFAULT_TTL_MS));
+    }
+
+    /**
+     * Returns true, if the key was recently found missing. Expired entries are removed.
+     *
+     * @param key key
+     * @return true, if the lookup of the key should be skipped
+     */
+    public boolean isMissing(K key) {
+        Long expiration = expirations.get(key);
+        if (expiration == null) {
+            return false;
+        }
+        if (System.nanoTime() - expiration < 0) {
+            return true;
+        }
+
+        expirations.remove(key, expiration);
+        return false;
+    }
+
+    /**
+     * Records that the key was not found. Does nothing, if the TTL is 0.
+     *
+     * @param key key
+     */
+    public void put(K key) {
+        if (ttlNanos > 0) {
+            expirations.put(key, System.nanoTime() + ttlNanos);
+        }
+    }
+
+    /**
+     * Removes the key, because it appeared in the registry.
+     *
+     * @param key key
+     */
+    public void invalidate(K key) {
+        expirations.remove(key);
+    }
+}
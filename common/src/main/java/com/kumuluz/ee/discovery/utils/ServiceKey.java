@@ -0,0 +1,167 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import com.kumuluz.ee.discovery.enums.ServiceType;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interned key, identifying a service in discovery caches.
+ *
+ * Keys are obtained with {@link #of(String, String, String, ServiceType)}, which always returns the same instance for
+ * equal components. Interned keys are looked up by their components in nested maps, so obtaining a key, which was
+ * already interned, does not allocate. Hash code is computed once and equal keys are the same instance, so map lookups
+ * compare by reference. Unlike concatenated string keys, components cannot collide, regardless of the characters they
+ * contain.
+ *
+ * Interned keys are never released. Their number is bounded by the distinct services, versions and version ranges,
+ * which are registered or looked up.
+ *
+ * Components, which are not relevant for a particular cache (e.g. version for a cache of service versions), are set
+ * to null.
+ *
+ * @since 1.2.0
+ */
+public final class ServiceKey {
+
+    // stands for null components, which cannot be used as keys of concurrent maps
+    private static final Object NULL_COMPONENT = new Object();
+
+    // environment -> service name -> version -> keys, indexed by service type ordinal + 1 (0 for no type)
+    private static final ConcurrentMap<Object, ConcurrentMap<Object, ConcurrentMap<Object,
+            AtomicReferenceArray<ServiceKey>>>> interned = new ConcurrentHashMap<>();
+
+    private final String serviceName;
+    private final String version;
+    private final String environment;
+    private final ServiceType serviceType;
+    private final int hash;
+
+    private ServiceKey(String serviceName, String version, String environment, ServiceType serviceType) {
+        this.serviceName = serviceName;
+        this.version = version;
+        this.environment = environment;
+        this.serviceType = serviceType;
+        this.hash = Objects.hash(serviceName, version, environment, serviceType);
+    }
+
+    /**
+     * Returns the interned key for given components.
+     *
+     * @param serviceName service name
+     * @param version     service version or version range, may be null
+     * @param environment service environment
+     * @param serviceType service type, may be null
+     * @return interned key
+     */
+    public static ServiceKey of(String serviceName, String version, String environment, ServiceType serviceType) {
+        AtomicReferenceArray<ServiceKey> keys = getKeys(component(serviceName), component(version),
+                component(environment));
+        int index = (serviceType == null) ? 0 : serviceType.ordinal() + 1;
+
+        ServiceKey key = keys.get(index);
+        if (key == null) {
+            keys.compareAndSet(index, null, new ServiceKey(serviceName, version, environment, serviceType));
+            key = keys.get(index);
+        }
+
+        return key;
+    }
+
+    private static AtomicReferenceArray<ServiceKey> getKeys(Object serviceName, Object version, Object environment) {
+        ConcurrentMap<Object, ConcurrentMap<Object, AtomicReferenceArray<ServiceKey>>> services =
+                interned.get(environment);
+        if (services == null) {
+            services = interned.computeIfAbsent(environment, e -> new ConcurrentHashMap<>());
+        }
+
+        ConcurrentMap<Object, AtomicReferenceArray<ServiceKey>> versions = services.get(serviceName);
+        if (versions == null) {
+            versions = services.computeIfAbsent(serviceName, n -> new ConcurrentHashMap<>());
+        }
+
+        AtomicReferenceArray<ServiceKey> keys = versions.get(version);
+        if (keys == null) {
+            keys = versions.computeIfAbsent(version,
+                    v -> new AtomicReferenceArray<>(ServiceType.values().length + 1));
+        }
+
+        return keys;
+    }
+
+    private static Object component(String component) {
+        return (component == null) ? NULL_COMPONENT : component;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    public ServiceType getServiceType() {
+        return serviceType;
+    }
+
+    /**
+     * Checks, if the key belongs to the given service in the given environment, regardless of version and type.
+     *
+     * @param serviceName service name
+     * @param environment service environment
+     * @return true, if the key belongs to the service
+     */
+    public boolean isForService(String serviceName, String environment) {
+        return Objects.equals(this.serviceName, serviceName) && Objects.equals(this.environment, environment);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ServiceKey)) {
+            return false;
+        }
+        ServiceKey that = (ServiceKey) o;
+        return hash == that.hash && serviceType == that.serviceType && Objects.equals(serviceName, that.serviceName)
+                && Objects.equals(version, that.version) && Objects.equals(environment, that.environment);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return serviceName + ":" + version + ":" + environment + ":" + serviceType;
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.discovery.enums.ServiceType;
+
+import java.net.*;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Logger;
+
+/**
+ * Base URL and container URL of a service instance, registered by a key/value store backend.
+ *
+ * The base URL is taken from configuration. The container URL is taken from kumuluzee.container-url. If the service
+ * runs in a cluster and no container URL is set, or if no base URL is set, the URL is derived from the address of a
+ * local network interface, preferring non-loopback IPv4 addresses.
+ *
+ * @since 1.2.0
+ */
+public class ServiceUrls {
+
+    private static final Logger log = Logger.getLogger(ServiceUrls.class.getName());
+
+    private final String baseUrl;
+    private final String containerUrl;
+
+    private ServiceUrls(String baseUrl, String containerUrl) {
+        this.baseUrl = baseUrl;
+        this.containerUrl = containerUrl;
+    }
+
+    /**
+     * Determines the URLs of a service instance.
+     *
+     * @param baseUrl     base URL, given at registration, or null to read it from configuration
+     * @param clusterId   id of the cluster, the service runs in, or null
+     * @param serviceType service type
+     * @return URLs or empty, if the base URL is not set and cannot be derived
+     */
+    public static Optional<ServiceUrls> detect(String baseUrl, String clusterId, ServiceType serviceType) {
+
+        if (baseUrl == null) {
+            baseUrl = CommonUtils.getBaseUrl(serviceType);
+        }
+
+        String containerUrl = ConfigurationUtil.getInstance().get("kumuluzee.container-url").orElse(null);
+        if (containerUrl != null) {
+            try {
+                containerUrl = new URL(containerUrl).toString();
+            } catch (MalformedURLException e) {
+                log.severe("Cannot parse kumuluzee.container-url. Exception: " + e.toString());
+                containerUrl = null;
+            }
+        }
+
+        if (clusterId != null || baseUrl == null || baseUrl.isEmpty()) {
+            URL ipUrl = getInterfaceUrl(CommonUtils.getServicePort(serviceType));
+
+            if (clusterId != null) {
+                if (containerUrl == null && ipUrl != null) {
+                    containerUrl = ipUrl.toString();
+                } else if (containerUrl == null) {
+                    log.severe("No container URL found, but running in container. All services will use service" +
+                            "URL. You can set container URL with configuration key kumuluzee.container-url");
+                }
+            }
+            if (baseUrl == null || baseUrl.isEmpty()) {
+                if (ipUrl != null) {
+                    log.warning("No service URL provided, using URL " + ipUrl.toString() +
+                            ". You should probably set service URL with configuration key kumuluzee.server.base-url");
+                    baseUrl = ipUrl.toString();
+                } else {
+                    log.severe("No service URL provided or found." +
+                            "Set service URL with configuration key kumuluzee.server.base-url");
+                    return Optional.empty();
+                }
+            }
+        }
+
+        return Optional.of(new ServiceUrls(baseUrl, containerUrl));
+    }
+
+    /**
+     * Returns the URL with the address of the preferred local network interface, or null, if none is found.
+     */
+    private static URL getInterfaceUrl(Integer servicePort) {
+        List<InetAddress> interfaceAddresses = new ArrayList<>();
+        try {
+            Enumeration<NetworkInterface> niEnum = NetworkInterface.getNetworkInterfaces();
+            while (niEnum.hasMoreElements()) {
+                NetworkInterface ni = niEnum.nextElement();
+                Enumeration<InetAddress> inetEnum = ni.getInetAddresses();
+                while (inetEnum.hasMoreElements()) {
+                    interfaceAddresses.add(inetEnum.nextElement());
+                }
+            }
+        } catch (SocketException e) {
+            log.warning("Cannot list network interfaces. Exception: " + e.toString());
+        }
+        interfaceAddresses.sort(new HostAddressComparator());
+
+        for (InetAddress addr : interfaceAddresses) {
+            try {
+                if (addr instanceof Inet4Address) {
+                    return new URL("http://" + addr.getHostAddress() + ":" + servicePort);
+                } else {
+                    return new URL("http://[" + addr.getHostAddress().split("%")[0] + "]:" + servicePort);
+                }
+            } catch (MalformedURLException e) {
+                log.severe("Cannot parse URL. Exception: " + e.toString());
+            }
+        }
+
+        return null;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public String getContainerUrl() {
+        return containerUrl;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import com.kumuluz.ee.discovery.enums.ServiceType;
+import com.vdurmont.semver4j.Requirement;
+import com.vdurmont.semver4j.Semver;
+import com.vdurmont.semver4j.SemverException;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Resolves NPM version ranges to registered service versions and caches the results.
+ *
+ * Compiled ranges are shared by all resolvers. Resolved versions and sorted version lists are cached per service,
+ * environment and service type, and must be invalidated with {@link #invalidate(String, String)} whenever the set of
+ * registered versions of a service changes. Invalidation bumps the generation of the service; cached entries are
+ * stamped with the generation they were computed in, and entries of an older generation are ignored, so a resolution
+ * racing with an invalidation never caches a stale result.
+ *
+ * @since 1.2.0
+ */
+public class VersionResolver {
+
+    // compiled version ranges; exact versions and unparsable ranges are mapped to empty requirements
+    private static final ConcurrentMap<String, Optional<Requirement>> requirements = new ConcurrentHashMap<>();
+
+    private final DiscoveryUtil discoveryUtil;
+
+    // generations of services, keyed by service name and environment
+    private final ConcurrentMap<ServiceKey, AtomicLong> generations;
+    private final ConcurrentMap<ServiceKey, Stamped<String>> resolvedVersions;
+    private final ConcurrentMap<ServiceKey, Stamped<Semver[]>> sortedVersions;
+
+    public VersionResolver(DiscoveryUtil discoveryUtil) {
+        this.discoveryUtil = discoveryUtil;
+        this.generations = new ConcurrentHashMap<>();
+        this.resolvedVersions = new ConcurrentHashMap<>();
+        this.sortedVersions = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Resolves version or version range to the highest registered version satisfying it. If no registered version
+     * satisfies the range or the version is not a range, the given version is returned.
+     *
+     * @param serviceName service name
+     * @param version     version or NPM version range
+     * @param environment service environment
+     * @param serviceType service type
+     * @return resolved version
+     */
+    public String resolve(String serviceName, String version, String environment, ServiceType serviceType) {
+        return resolve(serviceName, version, environment, serviceType,
+                () -> discoveryUtil.getServiceVersions(serviceName, environment, serviceType));
+    }
+
+    /**
+     * Resolves version or version range against the given registered versions instead of querying
+     * {@link DiscoveryUtil#getServiceVersions(String, String, ServiceType)}. Used by asynchronous lookups, which
+     * already hold the registered versions and must not block.
+     *
+     * @param serviceName        service name
+     * @param version            version or NPM version range
+     * @param environment        service environment
+     * @param serviceType        service type
+     * @param registeredVersions versions currently registered for the service
+     * @return resolved version
+     */
+    public String resolve(String serviceName, String version, String environment, ServiceType serviceType,
+                          Collection<String> registeredVersions) {
+        return resolve(serviceName, version, environment, serviceType, () -> Optional.ofNullable(registeredVersions));
+    }
+
+    private String resolve(String serviceName, String version, String environment, ServiceType serviceType,
+                           Supplier<Optional<? extends Collection<String>>> registeredVersions) {
+
+        Optional<Requirement> versionRequirement = getRequirement(version);
+        if (!versionRequirement.isPresent()) {
+            return version;
+        }
+
+        AtomicLong generation = getGeneration(serviceName, environment);
+        long currentGeneration = generation.get();
+
+        ServiceKey resolutionKey = ServiceKey.of(serviceName, version, environment, serviceType);
+        Stamped<String> resolved = resolvedVersions.get(resolutionKey);
+        if (resolved != null && resolved.generation == currentGeneration) {
+            return resolved.value;
+        }
+
+        Semver[] versions = getSortedVersions(serviceName, environment, serviceType, currentGeneration,
+                registeredVersions);
+        if (versions == null) {
+            // versions are not known (yet), do not cache the result
+            return version;
+        }
+
+        String resolvedVersion = version;
+        for (int i = versions.length - 1; i >= 0; i--) {
+            if (versions[i].satisfies(versionRequirement.get())) {
+                resolvedVersion = versions[i].getOriginalValue();
+                break;
+            }
+        }
+
+        if (generation.get() == currentGeneration) {
+            resolvedVersions.put(resolutionKey, new Stamped<>(currentGeneration, resolvedVersion));
+        }
+
+        return resolvedVersion;
+    }
+
+    /**
+     * Invalidates cached resolutions of the given service. Should be called when registered versions change.
+     *
+     * @param serviceName service name
+     * @param environment service environment
+     */
+    public void invalidate(String serviceName, String environment) {
+        getGeneration(serviceName, environment).incrementAndGet();
+        sortedVersions.keySet().removeIf(k -> k.isForService(serviceName, environment));
+        resolvedVersions.keySet().removeIf(k -> k.isForService(serviceName, environment));
+    }
+
+    /**
+     * Checks, if the version is a range, which needs the registered versions to be resolved.
+     *
+     * @param version version or NPM version range
+     * @return true, if the version is a range
+     */
+    public static boolean isRange(String version) {
+        return getRequirement(version).isPresent();
+    }
+
+    private Semver[] getSortedVersions(String serviceName, String environment, ServiceType serviceType,
+                                       long currentGeneration,
+                                       Supplier<Optional<? extends Collection<String>>> registeredVersions) {
+
+        ServiceKey versionsKey = ServiceKey.of(serviceName, null, environment, serviceType);
+        Stamped<Semver[]> sorted = sortedVersions.get(versionsKey);
+        if (sorted != null && sorted.generation == currentGeneration) {
+            return sorted.value;
+        }
+
+        Optional<? extends Collection<String>> versionsOpt = registeredVersions.get();
+        if (!versionsOpt.isPresent() || versionsOpt.get().isEmpty()) {
+            return null;
+        }
+
+        List<Semver> versionsSemver = new ArrayList<>();
+        for (String versionString : versionsOpt.get()) {
+            try {
+                versionsSemver.add(new Semver(versionString, Semver.SemverType.NPM));
+            } catch (SemverException ignored) {
+            }
+        }
+        Collections.sort(versionsSemver);
+
+        Semver[] versions = versionsSemver.toArray(new Semver[0]);
+        if (getGeneration(serviceName, environment).get() == currentGeneration) {
+            sortedVersions.put(versionsKey, new Stamped<>(currentGeneration, versions));
+        }
+
+        return versions;
+    }
+
+    private AtomicLong getGeneration(String serviceName, String environment) {
+        ServiceKey serviceKey = ServiceKey.of(serviceName, null, environment, null);
+        AtomicLong generation = generations.get(serviceKey);
+        if (generation == null) {
+            generation = generations.computeIfAbsent(serviceKey, k -> new AtomicLong());
+        }
+
+        return generation;
+    }
+
+    private static Optional<Requirement> getRequirement(String version) {
+        Optional<Requirement> requirement = requirements.get(version);
+        if (requirement == null) {
+            requirement = requirements.computeIfAbsent(version, VersionResolver::compileRequirement);
+        }
+
+        return requirement;
+    }
+
+    private static Optional<Requirement> compileRequirement(String version) {
+
+        Requirement versionRequirement;
+        try {
+            versionRequirement = Requirement.buildNPM(version);
+        } catch (SemverException se) {
+            return Optional.empty();
+        }
+
+        if (!version.contains("*") && !version.contains("x")) {
+            try {
+                new Semver(version, Semver.SemverType.NPM);
+                return Optional.empty();
+            } catch (SemverException ignored) {
+            }
+        }
+
+        return Optional.of(versionRequirement);
+    }
+
+    /**
+     * Cached value, stamped with the generation of the service it was computed in.
+     */
+    private static final class Stamped<T> {
+
+        private final long generation;
+        private final T value;
+
+        Stamped(long generation, T value) {
+            this.generation = generation;
+            this.value = value;
+        }
+    }
+}
@@ -24,6 +24,11 @@ import com.kumuluz.ee.common.config.EeConfig;
 import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
 import com.kumuluz.ee.discovery.enums.AccessType;
 import com.kumuluz.ee.discovery.enums.ServiceType;
+import com.kumuluz.ee.discovery.loadbalancing.LoadBalancer;
+import com.kumuluz.ee.discovery.loadbalancing.LoadBalancers;
+import com.kumuluz.ee.discovery.topology.Flow;
+import com.kumuluz.ee.discovery.topology.TopologyEvent;
+import com.kumuluz.ee.discovery.topology.TopologyPublishers;
 import com.kumuluz.ee.discovery.utils.*;
 import com.orbitz.consul.*;
 import com.orbitz.consul.async.ConsulResponseCallback;
@@ -33,6 +38,9 @@ import com.orbitz.consul.cache.ServiceHealthKey;
 import com.orbitz.consul.model.ConsulResponse;
 import com.orbitz.consul.model.health.ServiceHealth;
 import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.option.CatalogOptions;
+import com.orbitz.consul.option.ConsistencyMode;
+import com.orbitz.consul.option.ImmutableQueryOptions;
 import com.orbitz.consul.option.QueryOptions;
 
 import javax.annotation.PostConstruct;
@@ -42,6 +50,10 @@ import java.net.ConnectException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -65,15 +77,38 @@ public class ConsulDiscoveryUtilImpl implements DiscoveryUtil {
 
     private List<ConsulServiceConfiguration> registeredServices;
     private Map<String, ScheduledFuture> registratorHandles;
+    private Map<String, ConsulRegistrator> registrators;
 
-    private Map<String, List<ConsulService>> serviceInstances;
-    private Map<String, Set<String>> serviceVersions;
-    private Map<String, URL> gatewayUrls;
+    private ConcurrentMap<ServiceKey, ConsulServiceInstances> serviceInstances;
+    // instances restored from the snapshot, used until instances are read from Consul, then removed
+    private ConcurrentMap<ServiceKey, ConsulServiceInstances> lastKnownServices;
+    // gateway URL as a single element array, or an empty array if the gateway is not set
+    private ConcurrentMap<ServiceKey, URL[]> gatewayUrls;
+    // environments, in which gateway URLs are watched
+    private Set<String> watchedGatewayEnvironments;
+
+    private VersionResolver versionResolver;
+    private TopologyPublishers topologyPublishers;
+
+    // concurrent cold lookups of the same key share a single Consul request
+    private SingleFlight<ServiceKey, ConsulServiceInstances> instanceLookups;
+    private SingleFlight<ServiceKey, URL[]> gatewayLookups;
+
+    // services, which recently could not be read from Consul
+    private NegativeLookupCache<ServiceKey> missingServices;
 
     private int startRetryDelay;
     private int maxRetryDelay;
 
     private static final int CONSUL_WATCH_WAIT_SECONDS = 120;
+    private static final String GATEWAY_URL_SUFFIX = "/gatewayUrl";
+    // default watch duration of ServiceHealthCache
+    private static final int CONSUL_HEALTH_WATCH_SECONDS = 10;
+
+    // consistency mode of all reads
+    private ConsistencyMode consistencyMode;
+    private QueryOptions queryOptions;
+    private long maxStaleness;
 
     private AgentClient agentClient;
     private HealthClient healthClient;
@@ -84,10 +119,24 @@ public class ConsulDiscoveryUtilImpl implements DiscoveryUtil {
 
         this.registeredServices = new LinkedList<>();
         this.registratorHandles = new HashMap<>();
+        this.registrators = new HashMap<>();
+
+        this.serviceInstances = new ConcurrentHashMap<>();
+        this.lastKnownServices = new ConcurrentHashMap<>();
+        this.gatewayUrls = new ConcurrentHashMap<>();
+        this.watchedGatewayEnvironments = ConcurrentHashMap.newKeySet();
+
+        this.versionResolver = new VersionResolver(this);
+        this.topologyPublishers = new TopologyPublishers();
 
-        this.serviceInstances = new HashMap<>();
-        this.serviceVersions = new HashMap<>();
-        this.gatewayUrls = new HashMap<>();
+        this.instanceLookups = new SingleFlight<>();
+        this.gatewayLookups = new SingleFlight<>();
+
+        this.missingServices = NegativeLookupCache.fromConfiguration();
+
+        // retry delays of registration and of watches, which also run, if no service is registered
+        this.startRetryDelay = InitializationUtils.getStartRetryDelayMs(configurationUtil, "consul");
+        this.maxRetryDelay = InitializationUtils.getMaxRetryDelayMs(configurationUtil, "consul");
 
         URL consulAgentUrl = null;
         try {
@@ -117,6 +166,66 @@ public class ConsulDiscoveryUtilImpl implements DiscoveryUtil {
         this.agentClient = consul.agentClient();
         this.healthClient = consul.healthClient();
         this.kvClient = consul.keyValueClient();
+
+        this.consistencyMode = ConsistencyMode.DEFAULT;
+        String consistency = configurationUtil.get("kumuluzee.discovery.consul.consistency").orElse(null);
+        if (consistency != null) {
+            try {
+                this.consistencyMode = ConsistencyMode.valueOf(consistency.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                log.warning("Unknown Consul consistency mode: " + consistency + ". Using default mode.");
+            }
+        }
+        this.queryOptions = ImmutableQueryOptions.builder().consistencyMode(this.consistencyMode).build();
+        this.maxStaleness = configurationUtil.getInteger("kumuluzee.discovery.consul.max-staleness-ms").orElse(5000);
+
+        InstanceSnapshotStore.fromConfiguration().ifPresent(instanceSnapshotStore -> {
+            restoreLastKnownServices(instanceSnapshotStore.load());
+            instanceSnapshotStore.schedule(scheduler, this::getInstanceSnapshot);
+        });
+    }
+
+    private void restoreLastKnownServices(Map<ServiceKey, URL[]> snapshot) {
+        Map<ServiceKey, List<ConsulService>> instances = new HashMap<>();
+        for (Map.Entry<ServiceKey, URL[]> entry : snapshot.entrySet()) {
+            ServiceKey key = entry.getKey();
+            List<ConsulService> services = instances.computeIfAbsent(ServiceKey.of(key.getServiceName(), null,
+                    key.getEnvironment(), null), k -> new ArrayList<>());
+            for (URL url : entry.getValue()) {
+                services.add(ConsulService.getInstanceFromSnapshot(url, key.getVersion(), key.getServiceType()));
+            }
+        }
+
+        for (Map.Entry<ServiceKey, List<ConsulService>> entry : instances.entrySet()) {
+            this.lastKnownServices.put(entry.getKey(), new ConsulServiceInstances(entry.getValue()));
+        }
+    }
+
+    /**
+     * Returns present instances of discovered services, or the last known instances of services not read yet.
+     */
+    private Map<ServiceKey, URL[]> getInstanceSnapshot() {
+        Map<ServiceKey, URL[]> snapshot = new HashMap<>();
+        addToInstanceSnapshot(snapshot, this.lastKnownServices);
+        addToInstanceSnapshot(snapshot, this.serviceInstances);
+
+        return snapshot;
+    }
+
+    private static void addToInstanceSnapshot(Map<ServiceKey, URL[]> snapshot,
+                                              Map<ServiceKey, ConsulServiceInstances> services) {
+        for (Map.Entry<ServiceKey, ConsulServiceInstances> entry : services.entrySet()) {
+            ServiceKey key = entry.getKey();
+            for (String version : entry.getValue().getVersions()) {
+                for (ServiceType serviceType : ServiceType.values()) {
+                    URL[] urls = entry.getValue().getUrls(version, serviceType);
+                    if (urls.length > 0) {
+                        snapshot.put(ServiceKey.of(key.getServiceName(), version, key.getEnvironment(),
+                                serviceType), urls);
+                    }
+                }
+            }
+        }
     }
 
     @Override
@@ -150,10 +259,6 @@ public class ConsulDiscoveryUtilImpl implements DiscoveryUtil {
             servicePort = CommonUtils.getServicePort(serviceType);
         }
 
-        // get retry delays
-        startRetryDelay = InitializationUtils.getStartRetryDelayMs(configurationUtil, "consul");
-        maxRetryDelay = InitializationUtils.getMaxRetryDelayMs(configurationUtil, "consul");
-
         int deregisterCriticalServiceAfter = configurationUtil
                 .getInteger("kumuluzee.config.consul.deregister-critical-service-after-s").orElse(60);
 
@@ -163,11 +268,12 @@ public class ConsulDiscoveryUtilImpl implements DiscoveryUtil {
 
         // register and schedule heartbeats
         ConsulRegistrator registrator = new ConsulRegistrator(this.agentClient, this.healthClient,
-                serviceConfiguration);
+                serviceConfiguration, scheduler, this.queryOptions);
         ScheduledFuture handle = scheduler.scheduleWithFixedDelay(registrator, 0, pingInterval, TimeUnit.SECONDS);
 
         this.registeredServices.add(serviceConfiguration);
         this.registratorHandles.put(serviceId, handle);
+        this.registrators.put(serviceId, registrator);
     }
 
     @Override
@@ -184,6 +290,9 @@ public class ConsulDiscoveryUtilImpl implements DiscoveryUtil {
         for (ScheduledFuture handle : this.registratorHandles.values()) {
             handle.cancel(true);
         }
+        for (ConsulRegistrator registrator : this.registrators.values()) {
+            registrator.stop();
+        }
 
         if (agentClient != null) {
             for (ConsulServiceConfiguration serviceConfiguration : registeredServices) {
@@ -207,6 +316,10 @@ public class ConsulDiscoveryUtilImpl implements DiscoveryUtil {
         if (handle != null) {
             handle.cancel(true);
         }
+        ConsulRegistrator registrator = this.registrators.remove(serviceId);
+        if (registrator != null) {
+            registrator.stop();
+        }
 
         try {
             agentClient.deregister(serviceId);
@@ -218,166 +331,461 @@ public class ConsulDiscoveryUtilImpl implements DiscoveryUtil {
     @Override
     public Optional<List<URL>> getServiceInstances(String serviceName, String version, String environment,
                                                    AccessType accessType, ServiceType serviceType) {
-        String consulServiceKey = ConsulUtils.getConsulServiceKey(serviceName, environment);
-        if (!this.serviceInstances.containsKey(consulServiceKey) ||
-                !this.serviceVersions.containsKey(consulServiceKey)) {
+        URL[] urls = getServiceInstanceUrls(serviceName, version, environment, accessType, serviceType);
+        if (urls == null) {
+            return Optional.empty();
+        }
 
-            log.info("Performing service lookup on Consul Agent.");
+        return Optional.of(Collections.unmodifiableList(Arrays.asList(urls)));
+    }
 
-            List<ServiceHealth> serviceHealths;
-            try {
-                serviceHealths = healthClient.getHealthyServiceInstances(consulServiceKey)
-                        .getResponse();
-            } catch (ConsulException e) {
-                log.severe("Error retrieving healthy service instances from Consul: " + e.getLocalizedMessage());
-                return Optional.empty();
+    /**
+     * Returns precomputed instance URLs of a service or null, if instances could not be retrieved. The returned array
+     * is shared and must not be modified.
+     */
+    private URL[] getServiceInstanceUrls(String serviceName, String version, String environment,
+                                         AccessType accessType, ServiceType serviceType) {
+        ServiceKey serviceKey = ServiceKey.of(serviceName, null, environment, null);
+        ConsulServiceInstances serviceList = this.serviceInstances.get(serviceKey);
+        if (serviceList == null) {
+            if (!this.missingServices.isMissing(serviceKey)) {
+                serviceList = instanceLookups.execute(serviceKey, () -> loadServiceInstances(serviceKey));
             }
 
-            Set<String> serviceVersions = new HashSet<>();
-
-            List<ConsulService> serviceUrls = new ArrayList<>();
-            for (ServiceHealth serviceHealth : serviceHealths) {
-                ConsulService consulService = ConsulService.getInstanceFromServiceHealth(serviceHealth);
-                if (consulService != null) {
-                    serviceUrls.add(consulService);
-                    serviceVersions.add(consulService.getVersion());
+            if (serviceList == null) {
+                serviceList = this.lastKnownServices.get(serviceKey);
+                if (serviceList == null) {
+                    return null;
                 }
+                log.warning("Using last known instances of " + serviceName + ".");
             }
+        }
+
+        return getServiceInstanceUrls(serviceList, serviceName, version, environment, accessType, serviceType);
+    }
+
+    /**
+     * Reads instances of the service from Consul and starts watching them. Returns null, if instances could not be
+     * retrieved.
+     */
+    private ConsulServiceInstances loadServiceInstances(ServiceKey serviceKey) {
+        ConsulServiceInstances serviceList = this.serviceInstances.get(serviceKey);
+        if (serviceList != null) {
+            return serviceList;
+        }
+
+        String consulServiceKey = ConsulUtils.getConsulServiceKey(serviceKey.getServiceName(),
+                serviceKey.getEnvironment());
 
-            this.serviceInstances.put(consulServiceKey, serviceUrls);
-            this.serviceVersions.put(consulServiceKey, serviceVersions);
+        log.info("Performing service lookup on Consul Agent.");
 
-            addServiceListener(consulServiceKey);
+        List<ServiceHealth> serviceHealths;
+        try {
+            ConsulResponse<List<ServiceHealth>> consulResponse = healthClient.getHealthyServiceInstances(
+                    consulServiceKey, this.queryOptions);
+            reportStaleness(consulServiceKey, consulResponse);
+            serviceHealths = consulResponse.getResponse();
+        } catch (ConsulException e) {
+            log.severe("Error retrieving healthy service instances from Consul: " + e.getLocalizedMessage());
+            this.missingServices.put(serviceKey);
+            return null;
         }
 
+        return publishServiceInstances(consulServiceKey, serviceKey, serviceHealths);
+    }
+
+    /**
+     * Filters instances by version and service type. Queries Consul only, if the gateway URL is not cached yet.
+     */
+    private URL[] getServiceInstanceUrls(ConsulServiceInstances serviceList, String serviceName, String version,
+                                         String environment, AccessType accessType, ServiceType serviceType) {
         // filter instances by correct version
-        List<ConsulService> serviceList = this.serviceInstances.get(consulServiceKey);
-        List<URL> urlList = new LinkedList<>();
+        URL[] urls = ConsulServiceInstances.NO_URLS;
 
         if (version != null) {
-            String resolvedVersion = CommonUtils.determineVersion(this, serviceName, version, environment, serviceType);
-            for (ConsulService consulService : serviceList) {
-                if (consulService.getVersion().equals(resolvedVersion) && consulService.getServiceType() == serviceType) {
-                    urlList.add(consulService.getServiceUrl());
+            String resolvedVersion = versionResolver.resolve(serviceName, version, environment, serviceType,
+                    serviceList.getVersions());
+            urls = serviceList.getUrls(resolvedVersion, serviceType);
+
+            if (accessType == AccessType.GATEWAY && urls.length > 0) {
+                URL[] gatewayUrl = getGatewayUrl(ServiceKey.of(serviceName, resolvedVersion, environment, null));
+                if (gatewayUrl.length > 0) {
+                    urls = gatewayUrl;
                 }
             }
+        }
 
-            if (accessType == AccessType.GATEWAY && urlList.size() > 0) {
-                URL gatewayUrl = getGatewayUrl(serviceName, resolvedVersion, environment);
-                if (gatewayUrl != null) {
-                    urlList = new LinkedList<>();
-                    urlList.add(gatewayUrl);
-                }
+        return urls;
+    }
+
+    private ConsulServiceInstances publishServiceInstances(String consulServiceKey, ServiceKey serviceKey,
+                                                           List<ServiceHealth> serviceHealths) {
+        List<ConsulService> serviceUrls = new ArrayList<>();
+        for (ServiceHealth serviceHealth : serviceHealths) {
+            ConsulService consulService = ConsulService.getInstanceFromServiceHealth(serviceHealth);
+            if (consulService != null) {
+                serviceUrls.add(consulService);
             }
         }
 
-        return Optional.of(urlList);
+        ConsulServiceInstances serviceList = new ConsulServiceInstances(serviceUrls);
+        this.missingServices.invalidate(serviceKey);
+        ConsulServiceInstances present = this.serviceInstances.putIfAbsent(serviceKey, serviceList);
+        if (present != null) {
+            return present;
+        }
+
+        // live instances replace the last known ones, also in the snapshot and in version ranges resolved against them
+        this.lastKnownServices.remove(serviceKey);
+        versionResolver.invalidate(serviceKey.getServiceName(), serviceKey.getEnvironment());
+        publishTopology(serviceKey, serviceList);
+
+        addServiceListener(consulServiceKey, serviceKey);
+
+        return serviceList;
     }
 
-    private URL getGatewayUrl(String serviceName, String version, String environment) {
-        if (!this.gatewayUrls.containsKey(serviceName + "_" + version + "_" + environment)) {
-            String fullKey = "/environments/" + environment + "/services/" + serviceName + "/" + version +
-                    "/gatewayUrl";
+    private URL[] getGatewayUrl(ServiceKey gatewayKey) {
 
-            URL gatewayUrl = null;
-            try {
-                com.google.common.base.Optional<String> gatewayOpt = kvClient.getValueAsString(fullKey);
-                if (gatewayOpt.isPresent()) {
-                    gatewayUrl = new URL(gatewayOpt.get());
-                }
-            } catch (ConsulException e) {
-                log.severe("Consul exception: " + e.getLocalizedMessage());
-            } catch (MalformedURLException e) {
-                log.severe("Malformed URL exception: " + e.getLocalizedMessage());
+        URL[] cachedGatewayUrl = this.gatewayUrls.get(gatewayKey);
+        if (cachedGatewayUrl == null) {
+            return gatewayLookups.execute(gatewayKey, () -> loadGatewayUrl(gatewayKey));
+        } else {
+            return cachedGatewayUrl;
+        }
+    }
+
+    private URL[] loadGatewayUrl(ServiceKey gatewayKey) {
+        URL[] cachedGatewayUrl = this.gatewayUrls.get(gatewayKey);
+        if (cachedGatewayUrl != null) {
+            return cachedGatewayUrl;
+        }
+
+        URL gatewayUrl = null;
+        try {
+            com.google.common.base.Optional<Value> gatewayOpt = kvClient.getValue(getGatewayKey(gatewayKey),
+                    this.queryOptions);
+            if (gatewayOpt.isPresent() && gatewayOpt.get().getValueAsString().isPresent()) {
+                gatewayUrl = new URL(gatewayOpt.get().getValueAsString().get());
             }
-            this.gatewayUrls.put(serviceName + "_" + version + "_" + environment, gatewayUrl);
+        } catch (ConsulException e) {
+            log.severe("Consul exception: " + e.getLocalizedMessage());
+        } catch (MalformedURLException e) {
+            log.severe("Malformed URL exception: " + e.getLocalizedMessage());
+        }
 
-            // add watch to key
-            ConsulResponseCallback<com.google.common.base.Optional<Value>> callback = new ConsulResponseCallback<com
-                    .google.common.base.Optional<Value>>() {
+        return publishGatewayUrl(gatewayKey, gatewayUrl);
+    }
 
-                AtomicReference<BigInteger> index = new AtomicReference<>(new BigInteger("0"));
+    private URL[] publishGatewayUrl(ServiceKey gatewayKey, URL gatewayUrl) {
+        URL[] gatewayUrlArray = (gatewayUrl == null) ? ConsulServiceInstances.NO_URLS : new URL[]{gatewayUrl};
+        URL[] presentGatewayUrl = this.gatewayUrls.putIfAbsent(gatewayKey, gatewayUrlArray);
+        if (presentGatewayUrl != null) {
+            // another thread has already published this key
+            return presentGatewayUrl;
+        }
 
-                int currentRetryDelay = startRetryDelay;
+        watchGatewayUrls(gatewayKey.getEnvironment());
 
-                @Override
-                public void onComplete(ConsulResponse<com.google.common.base.Optional<Value>> consulResponse) {
-                    // successful request, reset delay
-                    currentRetryDelay = startRetryDelay;
+        return gatewayUrlArray;
+    }
 
-                    if (index.get() != null && !index.get().equals(consulResponse.getIndex())) {
-                        if (consulResponse.getResponse().isPresent()) {
+    /**
+     * Starts a single recursive watch of all gateway URLs in the environment, unless it is already running. Changes
+     * are applied only to gateway URLs, which are already cached. Package-private for tests.
+     */
+    void watchGatewayUrls(String environment) {
+        if (!this.watchedGatewayEnvironments.add(environment)) {
+            return;
+        }
 
-                            Value v = consulResponse.getResponse().get();
+        String prefix = getServicesKey(environment);
+        log.info("Initialising watch for gateway URLs at " + prefix);
 
-                            com.google.common.base.Optional<String> valueOpt = v.getValueAsString();
+        ConsulResponseCallback<List<Value>> callback = new ConsulResponseCallback<List<Value>>() {
 
-                            if (valueOpt.isPresent()) {
-                                log.info("Gateway URL at " + fullKey + " changed. New value: " + valueOpt.get());
-                                URL gatewayUrl = null;
-                                try {
-                                    gatewayUrl = new URL(valueOpt.get());
-                                } catch (MalformedURLException e) {
-                                    log.severe("Malformed URL exception: " + e.getLocalizedMessage());
-                                }
-                                gatewayUrls.put(serviceName + "_" + version + "_" + environment, gatewayUrl);
-                            }
+            AtomicReference<BigInteger> index = new AtomicReference<>(new BigInteger("0"));
+
+            int currentRetryDelay = startRetryDelay;
 
-                        } else if (gatewayUrls.get(serviceName + "_" + version + "_" + environment) != null) {
-                            log.info("Gateway URL at " + fullKey + " deleted.");
+            @Override
+            public void onComplete(ConsulResponse<List<Value>> consulResponse) {
+                // successful request, reset delay
+                currentRetryDelay = startRetryDelay;
+                reportStaleness(prefix, consulResponse);
+
+                if (index.get() != null && !index.get().equals(consulResponse.getIndex())) {
+                    Map<ServiceKey, URL[]> presentGatewayUrls = parseGatewayUrls(environment,
+                            consulResponse.getResponse());
+
+                    for (Map.Entry<ServiceKey, URL[]> entry : gatewayUrls.entrySet()) {
+                        ServiceKey gatewayKey = entry.getKey();
+                        if (!environment.equals(gatewayKey.getEnvironment())) {
+                            continue;
+                        }
 
-                            gatewayUrls.put(serviceName + "_" + version + "_" + environment, null);
+                        URL[] gatewayUrl = presentGatewayUrls.getOrDefault(gatewayKey,
+                                ConsulServiceInstances.NO_URLS);
+                        if (!Arrays.equals(gatewayUrl, entry.getValue())) {
+                            if (gatewayUrl.length > 0) {
+                                log.info("Gateway URL at " + getGatewayKey(gatewayKey) + " changed. New value: " +
+                                        gatewayUrl[0]);
+                            } else {
+                                log.info("Gateway URL at " + getGatewayKey(gatewayKey) + " deleted.");
+                            }
+                            gatewayUrls.put(gatewayKey, gatewayUrl);
                         }
                     }
+                }
+
+                index.set(consulResponse.getIndex());
 
-                    index.set(consulResponse.getIndex());
+                watch();
+            }
 
-                    watch();
+            void watch() {
+                kvClient.getValues(prefix, QueryOptions.blockSeconds(CONSUL_WATCH_WAIT_SECONDS, index.get())
+                        .consistencyMode(consistencyMode).build(), this);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                if (!(throwable instanceof ConnectException)) {
+                    log.severe("Watch error: " + throwable.getLocalizedMessage());
                 }
 
-                void watch() {
-                    kvClient.getValue(fullKey, QueryOptions.blockSeconds(CONSUL_WATCH_WAIT_SECONDS, index.get())
-                            .build(), this);
+                // every failure is retried with backoff on the scheduler, so a failing watch does not spin and the
+                // HTTP client thread is not blocked while waiting
+                scheduler.schedule(this::watch, currentRetryDelay, TimeUnit.MILLISECONDS);
+
+                // exponential increase, limited by maxRetryDelay
+                currentRetryDelay *= 2;
+                if (currentRetryDelay > maxRetryDelay) {
+                    currentRetryDelay = maxRetryDelay;
                 }
+            }
+        };
 
-                @Override
-                public void onFailure(Throwable throwable) {
-                    if (throwable instanceof ConnectException) {
-                        try {
-                            Thread.sleep(currentRetryDelay);
-                        } catch (InterruptedException ignored) {
-                        }
+        kvClient.getValues(prefix, QueryOptions.blockSeconds(CONSUL_WATCH_WAIT_SECONDS, new BigInteger("0"))
+                .consistencyMode(consistencyMode).build(), callback);
+    }
 
-                        // exponential increase, limited by maxRetryDelay
-                        currentRetryDelay *= 2;
-                        if (currentRetryDelay > maxRetryDelay) {
-                            currentRetryDelay = maxRetryDelay;
-                        }
-                    } else {
-                        log.severe("Watch error: " + throwable.getLocalizedMessage());
-                    }
+    /**
+     * Returns gateway URLs of all services and versions from the values under the services key of the environment.
+     */
+    private static Map<ServiceKey, URL[]> parseGatewayUrls(String environment, List<Value> values) {
+        Map<ServiceKey, URL[]> presentGatewayUrls = new HashMap<>();
+        if (values == null) {
+            return presentGatewayUrls;
+        }
 
-                    watch();
-                }
-            };
+        // keys are returned without the leading slash
+        String prefix = getServicesKey(environment).substring(1);
+        for (Value value : values) {
+            String key = value.getKey();
+            if (key.startsWith("/")) {
+                key = key.substring(1);
+            }
 
-            kvClient.getValue(fullKey, QueryOptions.blockSeconds(CONSUL_WATCH_WAIT_SECONDS, new BigInteger("0"))
-                    .build(), callback);
+            // {serviceName}/{version}/gatewayUrl
+            if (!key.startsWith(prefix) || !key.endsWith(GATEWAY_URL_SUFFIX)) {
+                continue;
+            }
+            int versionEnd = key.length() - GATEWAY_URL_SUFFIX.length();
+            int versionStart = key.lastIndexOf('/', versionEnd - 1) + 1;
+            if (versionStart <= prefix.length()) {
+                continue;
+            }
 
-            return gatewayUrl;
-        } else {
-            return this.gatewayUrls.get(serviceName + "_" + version + "_" + environment);
+            com.google.common.base.Optional<String> valueOpt = value.getValueAsString();
+            if (!valueOpt.isPresent()) {
+                continue;
+            }
+            try {
+                presentGatewayUrls.put(ServiceKey.of(key.substring(prefix.length(), versionStart - 1),
+                        key.substring(versionStart, versionEnd), environment, null),
+                        new URL[]{new URL(valueOpt.get())});
+            } catch (MalformedURLException e) {
+                log.severe("Malformed URL exception: " + e.getLocalizedMessage());
+            }
+        }
+
+        return presentGatewayUrls;
+    }
+
+    /**
+     * Logs a warning, if a stale read was served by a server, which has not been in contact with the leader for longer
+     * than <code>kumuluzee.discovery.consul.max-staleness-ms</code>.
+     */
+    private void reportStaleness(String key, ConsulResponse<?> consulResponse) {
+        if (this.consistencyMode != ConsistencyMode.STALE) {
+            return;
+        }
+
+        if (!consulResponse.isKnownLeader() || consulResponse.getLastContact() > this.maxStaleness) {
+            log.warning("Consul response for " + key + " may be stale. Last contact with the leader: " +
+                    consulResponse.getLastContact() + " ms ago, known leader: " + consulResponse.isKnownLeader());
         }
     }
 
+    private static String getGatewayKey(ServiceKey gatewayKey) {
+        return getServicesKey(gatewayKey.getEnvironment()) + gatewayKey.getServiceName() + "/" +
+                gatewayKey.getVersion() + GATEWAY_URL_SUFFIX;
+    }
+
+    private static String getServicesKey(String environment) {
+        return "/environments/" + environment + "/services/";
+    }
+
     @Override
     public Optional<URL> getServiceInstance(String serviceName, String version, String environment,
                                             AccessType accessType, ServiceType serviceType) {
-        Optional<List<URL>> optionalServiceInstances = getServiceInstances(serviceName, version, environment,
-                accessType, serviceType);
 
-        return optionalServiceInstances.flatMap(CommonUtils::pickServiceInstanceRoundRobin);
+        return getServiceInstance(serviceName, version, environment, accessType, serviceType,
+                LoadBalancers.getDefault());
+    }
+
+    @Override
+    public Optional<URL> getServiceInstance(String serviceName, String version, String environment,
+                                            AccessType accessType, ServiceType serviceType,
+                                            LoadBalancer loadBalancer) {
+        URL[] urls = getServiceInstanceUrls(serviceName, version, environment, accessType, serviceType);
+        if (urls == null) {
+            return Optional.empty();
+        }
+
+        return loadBalancer.pick(ServiceKey.of(serviceName, version, environment, serviceType), urls);
+
+    }
+
+    @Override
+    public CompletionStage<Optional<URL>> getServiceInstanceAsync(String serviceName, String version,
+                                                                  String environment, AccessType accessType,
+                                                                  ServiceType serviceType,
+                                                                  LoadBalancer loadBalancer) {
+
+        return loadServiceInstancesAsync(serviceName, environment).thenCompose(serviceList -> {
+            if (serviceList == null) {
+                return CompletableFuture.completedFuture(Optional.<URL>empty());
+            }
+
+            return loadGatewayUrlAsync(serviceList, serviceName, version, environment, accessType, serviceType)
+                    .thenApply(v -> loadBalancer.pick(ServiceKey.of(serviceName, version, environment,
+                            serviceType), getServiceInstanceUrls(serviceList, serviceName, version, environment,
+                            accessType, serviceType)));
+        });
+    }
+
+    /**
+     * Loads instances of the service, if they are not cached. The returned future is completed with null, if
+     * instances could not be retrieved.
+     */
+    private CompletableFuture<ConsulServiceInstances> loadServiceInstancesAsync(String serviceName,
+                                                                               String environment) {
+        ServiceKey serviceKey = ServiceKey.of(serviceName, null, environment, null);
+        ConsulServiceInstances serviceList = this.serviceInstances.get(serviceKey);
+        if (serviceList != null) {
+            return CompletableFuture.completedFuture(serviceList);
+        }
+        if (this.missingServices.isMissing(serviceKey)) {
+            return CompletableFuture.completedFuture(this.lastKnownServices.get(serviceKey));
+        }
+
+        return instanceLookups.executeAsync(serviceKey, () -> {
+            String consulServiceKey = ConsulUtils.getConsulServiceKey(serviceName, environment);
 
+            log.info("Performing service lookup on Consul Agent.");
+
+            CompletableFuture<ConsulServiceInstances> future = new CompletableFuture<>();
+            healthClient.getHealthyServiceInstances(consulServiceKey, this.queryOptions,
+                    new ConsulResponseCallback<List<ServiceHealth>>() {
+
+                        @Override
+                        public void onComplete(ConsulResponse<List<ServiceHealth>> consulResponse) {
+                            reportStaleness(consulServiceKey, consulResponse);
+                            future.complete(publishServiceInstances(consulServiceKey, serviceKey,
+                                    consulResponse.getResponse()));
+                        }
+
+                        @Override
+                        public void onFailure(Throwable throwable) {
+                            log.severe("Error retrieving healthy service instances from Consul: " +
+                                    throwable.getLocalizedMessage());
+                            missingServices.put(serviceKey);
+                            future.complete(null);
+                        }
+                    });
+
+            return future;
+        }).thenApply(loaded -> (loaded != null) ? loaded : lastKnownServices.get(serviceKey));
+    }
+
+    /**
+     * Loads the gateway URL, if it is needed and not cached, so that
+     * {@link #getServiceInstanceUrls(ConsulServiceInstances, String, String, String, AccessType, ServiceType)} does
+     * not block.
+     */
+    private CompletableFuture<Void> loadGatewayUrlAsync(ConsulServiceInstances serviceList, String serviceName,
+                                                        String version, String environment, AccessType accessType,
+                                                        ServiceType serviceType) {
+        if (accessType != AccessType.GATEWAY || version == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // resolve against the loaded instances, getServiceVersions could block the Consul client's callback thread
+        String resolvedVersion = versionResolver.resolve(serviceName, version, environment, serviceType,
+                serviceList.getVersions());
+        ServiceKey gatewayKey = ServiceKey.of(serviceName, resolvedVersion, environment, null);
+        if (this.gatewayUrls.containsKey(gatewayKey) || serviceList.getUrls(resolvedVersion, serviceType).length == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return gatewayLookups.executeAsync(gatewayKey, () -> {
+            CompletableFuture<URL[]> future = new CompletableFuture<>();
+            kvClient.getValue(getGatewayKey(gatewayKey), this.queryOptions,
+                    new ConsulResponseCallback<com.google.common.base.Optional<Value>>() {
+
+                        @Override
+                        public void onComplete(ConsulResponse<com.google.common.base.Optional<Value>> consulResponse) {
+                            reportStaleness(getGatewayKey(gatewayKey), consulResponse);
+                            URL gatewayUrl = null;
+                            if (consulResponse.getResponse().isPresent()) {
+                                com.google.common.base.Optional<String> valueOpt = consulResponse.getResponse()
+                                        .get().getValueAsString();
+                                if (valueOpt.isPresent()) {
+                                    try {
+                                        gatewayUrl = new URL(valueOpt.get());
+                                    } catch (MalformedURLException e) {
+                                        log.severe("Malformed URL exception: " + e.getLocalizedMessage());
+                                    }
+                                }
+                            }
+                            future.complete(publishGatewayUrl(gatewayKey, gatewayUrl));
+                        }
+
+                        @Override
+                        public void onFailure(Throwable throwable) {
+                            log.severe("Consul exception: " + throwable.getLocalizedMessage());
+                            future.complete(publishGatewayUrl(gatewayKey, null));
+                        }
+                    });
+
+            return future;
+        }).thenApply(gatewayUrl -> null);
+    }
+
+    @Override
+    public Flow.Publisher<TopologyEvent> getServiceTopology(String serviceName, String version, String environment,
+                                                            ServiceType serviceType) {
+
+        String resolvedVersion = versionResolver.resolve(serviceName, version, environment, serviceType);
+
+        return this.topologyPublishers.getPublisher(ServiceKey.of(serviceName, resolvedVersion, environment,
+                serviceType), () -> {
+            URL[] urls = getServiceInstanceUrls(serviceName, resolvedVersion, environment, AccessType.DIRECT,
+                    serviceType);
+            return (urls == null) ? ConsulServiceInstances.NO_URLS : urls;
+        });
     }
 
     @Override
@@ -389,39 +797,80 @@ public class ConsulDiscoveryUtilImpl implements DiscoveryUtil {
 
     @Override
     public Optional<List<String>> getServiceVersions(String serviceName, String environment, ServiceType serviceType) {
-        String consulServiceKey = ConsulUtils.getConsulServiceKey(serviceName, environment);
-        if (!this.serviceVersions.containsKey(consulServiceKey)) {
-            // initialize serviceVersions and watcher
-            getServiceInstances(serviceName, null, environment, AccessType.DIRECT, serviceType);
+        ServiceKey serviceKey = ServiceKey.of(serviceName, null, environment, null);
+        if (!this.serviceInstances.containsKey(serviceKey)) {
+            // initialize serviceInstances and watcher
+            getServiceInstanceUrls(serviceName, null, environment, AccessType.DIRECT, serviceType);
         }
 
-        List<String> versionsList = new LinkedList<>();
-        versionsList.addAll(this.serviceVersions.get(consulServiceKey));
+        ConsulServiceInstances serviceList = this.serviceInstances.get(serviceKey);
+        if (serviceList == null) {
+            serviceList = this.lastKnownServices.get(serviceKey);
+            if (serviceList == null) {
+                return Optional.empty();
+            }
+        }
 
-        return Optional.of(versionsList);
+        return Optional.of(new LinkedList<>(serviceList.getVersions()));
     }
 
-    private void addServiceListener(String serviceKey) {
-        ServiceHealthCache svHealth = ServiceHealthCache.newCache(healthClient, serviceKey);
+    private void publishTopology(ServiceKey serviceKey, ConsulServiceInstances snapshot) {
+        this.topologyPublishers.publish(serviceKey.getServiceName(), null, serviceKey.getEnvironment(),
+                snapshot::getUrls);
+    }
+
+    private void addServiceListener(String consulServiceKey, ServiceKey serviceKey) {
+        ServiceHealthCache svHealth = ServiceHealthCache.newCache(healthClient, consulServiceKey, true,
+                CatalogOptions.BLANK, CONSUL_HEALTH_WATCH_SECONDS, this.queryOptions);
 
         svHealth.addListener(new ConsulCache.Listener<ServiceHealthKey, ServiceHealth>() {
 
+            // values and parsed instances of the previous refresh; instances are null, if they could not be parsed
+            private Map<ServiceHealthKey, ServiceHealth> previousValues = Collections.emptyMap();
+            private Map<ServiceHealthKey, ConsulService> previousServices = Collections.emptyMap();
+
             @Override
             public void notify(Map<ServiceHealthKey, ServiceHealth> newValues) {
 
-                log.info("Service instances for service " + serviceKey + " refreshed.");
+                // only parse instances, which were added or changed since the previous refresh
+                Map<ServiceHealthKey, ConsulService> services = new HashMap<>();
+                boolean changed = newValues.size() != previousValues.size();
+                for (Map.Entry<ServiceHealthKey, ServiceHealth> serviceHealthKey : newValues.entrySet()) {
+                    ServiceHealthKey key = serviceHealthKey.getKey();
+                    ServiceHealth serviceHealth = serviceHealthKey.getValue();
+
+                    if (serviceHealth.equals(previousValues.get(key))) {
+                        services.put(key, previousServices.get(key));
+                    } else {
+                        services.put(key, ConsulService.getInstanceFromServiceHealth(serviceHealth));
+                        changed = true;
+                    }
+                }
 
-                serviceInstances.get(serviceKey).clear();
-                serviceVersions.get(serviceKey).clear();
+                previousValues = newValues;
+                previousServices = services;
 
-                for (Map.Entry<ServiceHealthKey, ServiceHealth> serviceHealthKey : newValues.entrySet()) {
-                    ConsulService consulService = ConsulService
-                            .getInstanceFromServiceHealth(serviceHealthKey.getValue());
+                if (!changed && serviceInstances.containsKey(serviceKey)) {
+                    return;
+                }
+
+                log.info("Service instances for service " + consulServiceKey + " refreshed.");
+
+                List<ConsulService> serviceUrls = new ArrayList<>(services.size());
+                for (ConsulService consulService : services.values()) {
                     if (consulService != null) {
-                        serviceInstances.get(serviceKey).add(consulService);
-                        serviceVersions.get(serviceKey).add(consulService.getVersion());
+                        serviceUrls.add(consulService);
                     }
                 }
+
+                ConsulServiceInstances snapshot = new ConsulServiceInstances(serviceUrls);
+                ConsulServiceInstances previous = serviceInstances.put(serviceKey, snapshot);
+                lastKnownServices.remove(serviceKey);
+                publishTopology(serviceKey, snapshot);
+
+                if (previous == null || !previous.getVersions().equals(snapshot.getVersions())) {
+                    versionResolver.invalidate(serviceKey.getServiceName(), serviceKey.getEnvironment());
+                }
             }
         });
 
@@ -436,10 +885,13 @@ public class ConsulDiscoveryUtilImpl implements DiscoveryUtil {
     @Override
     public void disableServiceInstance(String serviceName, String version, String environment, URL url, ServiceType serviceType) {
         // init serviceInstances, if not already present
-        getServiceInstances(serviceName, version, environment, AccessType.DIRECT, serviceType);
-        List<ConsulService> serviceList = this.serviceInstances
-                .get(ConsulUtils.getConsulServiceKey(serviceName, environment));
-        for (ConsulService consulService : serviceList) {
+        getServiceInstanceUrls(serviceName, version, environment, AccessType.DIRECT, serviceType);
+        ConsulServiceInstances serviceList = this.serviceInstances
+                .get(ServiceKey.of(serviceName, null, environment, null));
+        if (serviceList == null) {
+            return;
+        }
+        for (ConsulService consulService : serviceList.getInstances()) {
             if (consulService.getVersion().equals(version) && consulService.getServiceUrl().equals(url)) {
                 try {
                     agentClient.toggleMaintenanceMode(consulService.getId(), true, "Service disabled" +
@@ -30,8 +30,12 @@ import com.orbitz.consul.model.agent.ImmutableRegCheck;
 import com.orbitz.consul.model.agent.ImmutableRegistration;
 import com.orbitz.consul.model.agent.Registration;
 import com.orbitz.consul.model.health.ServiceHealth;
+import com.orbitz.consul.option.QueryOptions;
 
 import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
@@ -47,16 +51,24 @@ public class ConsulRegistrator implements Runnable {
     private AgentClient agentClient;
     private HealthClient healthClient;
     private ConsulServiceConfiguration serviceConfiguration;
+    private ScheduledExecutorService scheduler;
+    private QueryOptions queryOptions;
 
     private boolean isRegistered;
 
     private int currentRetryDelay;
+    // pending registration retry, registrator does not retry on its own schedule while it is set
+    private volatile ScheduledFuture<?> retryHandle;
+    private volatile boolean stopped;
 
     public ConsulRegistrator(AgentClient agentClient, HealthClient healthClient,
-                             ConsulServiceConfiguration serviceConfiguration) {
+                             ConsulServiceConfiguration serviceConfiguration, ScheduledExecutorService scheduler,
+                             QueryOptions queryOptions) {
         this.agentClient = agentClient;
         this.healthClient = healthClient;
         this.serviceConfiguration = serviceConfiguration;
+        this.scheduler = scheduler;
+        this.queryOptions = queryOptions;
 
         this.isRegistered = false;
 
@@ -66,12 +78,26 @@ public class ConsulRegistrator implements Runnable {
     @Override
     public void run() {
         if (!this.isRegistered) {
-            this.registerToConsul();
+            if (this.retryHandle == null) {
+                this.registerToConsul();
+            }
         } else {
             sendHeartbeat();
         }
     }
 
+    /**
+     * Cancels pending registration retries. Called when the service is deregistered.
+     */
+    public void stop() {
+        this.stopped = true;
+
+        ScheduledFuture<?> pendingRetry = this.retryHandle;
+        if (pendingRetry != null) {
+            pendingRetry.cancel(false);
+        }
+    }
+
     private void sendHeartbeat() {
         log.fine("Sending heartbeat.");
         try {
@@ -93,47 +119,37 @@ public class ConsulRegistrator implements Runnable {
                     " Service ID: " + this.serviceConfiguration.getServiceId());
 
             if (agentClient != null) {
-                while (!this.isRegistered) {
-                    try {
-                        ImmutableRegCheck.Builder ttlCheckBuilder = ImmutableRegCheck.builder()
-                                .ttl(String.format("%ss", this.serviceConfiguration.getTtl()));
-
-                        if (this.serviceConfiguration.getDeregisterCriticalServiceAfter() != 0) {
-                            ttlCheckBuilder = ttlCheckBuilder.deregisterCriticalServiceAfter(String
-                                    .format("%ss", this.serviceConfiguration.getDeregisterCriticalServiceAfter()));
-                        }
-                        Registration.RegCheck ttlCheck = ttlCheckBuilder.build();
-
-                        ImmutableRegistration.Builder registrationBuilder = ImmutableRegistration.builder()
-                                .port(this.serviceConfiguration.getServicePort())
-                                .check(ttlCheck)
-                                .name(this.serviceConfiguration.getServiceConsulKey())
-                                .id(this.serviceConfiguration.getServiceId())
-                                .addTags(this.serviceConfiguration.getServiceProtocol(),
-                                        ConsulService.TAG_VERSION_PREFIX + this.serviceConfiguration.getVersion(),
-                                        ConsulService.TAG_SERVICE_TYPE + this.serviceConfiguration.getServiceType());
-
-                        if (this.serviceConfiguration.getAddress() != null) {
-                            registrationBuilder.address(this.serviceConfiguration.getAddress());
-                        }
-
-                        agentClient.register(registrationBuilder.build());
-
-                        this.isRegistered = true;
-                        this.currentRetryDelay = serviceConfiguration.getStartRetryDelay();
-                    } catch (ConsulException e) {
-                        log.severe("Consul Exception when registering service: " + e.getLocalizedMessage());
-                        try {
-                            Thread.sleep(currentRetryDelay);
-                        } catch (InterruptedException ignored) {
-                        }
-
-                        // exponential increase, limited by maxRetryDelay
-                        currentRetryDelay *= 2;
-                        if (currentRetryDelay > serviceConfiguration.getMaxRetryDelay()) {
-                            currentRetryDelay = serviceConfiguration.getMaxRetryDelay();
-                        }
+                try {
+                    ImmutableRegCheck.Builder ttlCheckBuilder = ImmutableRegCheck.builder()
+                            .ttl(String.format("%ss", this.serviceConfiguration.getTtl()));
+
+                    if (this.serviceConfiguration.getDeregisterCriticalServiceAfter() != 0) {
+                        ttlCheckBuilder = ttlCheckBuilder.deregisterCriticalServiceAfter(String
+                                .format("%ss", this.serviceConfiguration.getDeregisterCriticalServiceAfter()));
                     }
+                    Registration.RegCheck ttlCheck = ttlCheckBuilder.build();
+
+                    ImmutableRegistration.Builder registrationBuilder = ImmutableRegistration.builder()
+                            .port(this.serviceConfiguration.getServicePort())
+                            .check(ttlCheck)
+                            .name(this.serviceConfiguration.getServiceConsulKey())
+                            .id(this.serviceConfiguration.getServiceId())
+                            .addTags(this.serviceConfiguration.getServiceProtocol(),
+                                    ConsulService.TAG_VERSION_PREFIX + this.serviceConfiguration.getVersion(),
+                                    ConsulService.TAG_SERVICE_TYPE + this.serviceConfiguration.getServiceType());
+
+                    if (this.serviceConfiguration.getAddress() != null) {
+                        registrationBuilder.address(this.serviceConfiguration.getAddress());
+                    }
+
+                    agentClient.register(registrationBuilder.build());
+
+                    this.isRegistered = true;
+                    this.currentRetryDelay = serviceConfiguration.getStartRetryDelay();
+                } catch (ConsulException e) {
+                    log.severe("Consul Exception when registering service: " + e.getLocalizedMessage());
+                    scheduleRetry();
+                    return;
                 }
 
                 // we need to send heartbeat immediately after registration so the checks pass
@@ -144,12 +160,36 @@ public class ConsulRegistrator implements Runnable {
         }
     }
 
+    /**
+     * Schedules the next registration attempt on the shared scheduler, so that heartbeats of other services are not
+     * delayed while waiting.
+     */
+    private void scheduleRetry() {
+        if (this.stopped) {
+            return;
+        }
+
+        this.retryHandle = scheduler.schedule(() -> {
+            this.retryHandle = null;
+            if (!this.stopped && !this.isRegistered) {
+                this.registerToConsul();
+            }
+        }, currentRetryDelay, TimeUnit.MILLISECONDS);
+
+        // exponential increase, limited by maxRetryDelay
+        currentRetryDelay *= 2;
+        if (currentRetryDelay > serviceConfiguration.getMaxRetryDelay()) {
+            currentRetryDelay = serviceConfiguration.getMaxRetryDelay();
+        }
+    }
+
     private boolean isRegistered() {
         if (healthClient != null) {
             List<ServiceHealth> serviceInstances;
             try {
                 serviceInstances = healthClient
-                        .getHealthyServiceInstances(this.serviceConfiguration.getServiceConsulKey()).getResponse();
+                        .getHealthyServiceInstances(this.serviceConfiguration.getServiceConsulKey(), queryOptions)
+                        .getResponse();
             } catch (ConsulException e) {
                 log.severe("Error retrieving healthy instances from Consul. Cannot determine, if service is " +
                         "already registered. ConsulException: " + e.getLocalizedMessage());
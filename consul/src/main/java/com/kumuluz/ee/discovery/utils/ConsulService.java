@@ -93,6 +93,13 @@ public class ConsulService {
         return null;
     }
 
+    /**
+     * Creates a service, restored from a snapshot of last known instances. The service has no Consul service ID.
+     */
+    public static ConsulService getInstanceFromSnapshot(URL serviceUrl, String version, ServiceType serviceType) {
+        return new ConsulService(null, serviceUrl, version, serviceType);
+    }
+
     private static URL serviceHealthToURL(ServiceHealth serviceHealth) {
 
         String address = serviceHealth.getService().getAddress();
@@ -0,0 +1,97 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import com.kumuluz.ee.discovery.enums.ServiceType;
+
+import java.net.URL;
+import java.util.*;
+
+/**
+ * Immutable snapshot of service instances of a single Consul service. Instance URLs are indexed by service type and
+ * version when the snapshot is built, so picking an instance is a lookup and does not require filtering the instances.
+ *
+ * @since 1.2.0
+ */
+public class ConsulServiceInstances {
+
+    public static final URL[] NO_URLS = new URL[0];
+
+    private final List<ConsulService> instances;
+    private final Set<String> versions;
+    private final Map<ServiceType, Map<String, URL[]>> urls;
+
+    public ConsulServiceInstances(List<ConsulService> instances) {
+        this.instances = Collections.unmodifiableList(instances);
+
+        Set<String> versions = new HashSet<>();
+        Map<ServiceType, Map<String, List<URL>>> versionUrls = new EnumMap<>(ServiceType.class);
+        for (ConsulService consulService : instances) {
+            versions.add(consulService.getVersion());
+
+            if (consulService.getServiceType() != null) {
+                versionUrls.computeIfAbsent(consulService.getServiceType(), t -> new HashMap<>())
+                        .computeIfAbsent(consulService.getVersion(), v -> new ArrayList<>())
+                        .add(consulService.getServiceUrl());
+            }
+        }
+        this.versions = Collections.unmodifiableSet(versions);
+
+        this.urls = new EnumMap<>(ServiceType.class);
+        for (Map.Entry<ServiceType, Map<String, List<URL>>> typeEntry : versionUrls.entrySet()) {
+            Map<String, URL[]> typeUrls = new HashMap<>();
+            for (Map.Entry<String, List<URL>> versionEntry : typeEntry.getValue().entrySet()) {
+                typeUrls.put(versionEntry.getKey(), versionEntry.getValue().toArray(new URL[0]));
+            }
+            this.urls.put(typeEntry.getKey(), typeUrls);
+        }
+    }
+
+    public List<ConsulService> getInstances() {
+        return instances;
+    }
+
+    /**
+     * Returns versions of all instances, in no particular order. Version ranges are resolved by
+     * {@link VersionResolver}, which orders versions by semantic version.
+     */
+    public Set<String> getVersions() {
+        return versions;
+    }
+
+    /**
+     * Returns URLs of instances with the given version and service type. The returned array is shared and must not
+     * be modified.
+     *
+     * @param version     service version
+     * @param serviceType service type
+     * @return instance URLs
+     */
+    public URL[] getUrls(String version, ServiceType serviceType) {
+        Map<String, URL[]> typeUrls = (serviceType == null) ? null : urls.get(serviceType);
+        if (typeUrls == null) {
+            return NO_URLS;
+        }
+
+        URL[] versionUrls = typeUrls.get(version);
+        return (versionUrls == null) ? NO_URLS : versionUrls;
+    }
+}
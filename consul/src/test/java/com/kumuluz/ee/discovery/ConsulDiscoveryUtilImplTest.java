@@ -0,0 +1,89 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationImpl;
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Watches gateway URLs against a local HTTP server, which fails every request like an unavailable Consul agent.
+ *
+ * @since 1.2.0
+ */
+public class ConsulDiscoveryUtilImplTest {
+
+    private static HttpServer agent;
+    private static final AtomicInteger kvRequests = new AtomicInteger();
+
+    private ConsulDiscoveryUtilImpl discoveryUtil;
+
+    @BeforeClass
+    public static void startAgent() throws IOException {
+        agent = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        agent.createContext("/", exchange -> {
+            if (exchange.getRequestURI().getPath().startsWith("/v1/kv/")) {
+                kvRequests.incrementAndGet();
+            }
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        agent.start();
+
+        System.setProperty("kumuluzee.discovery.consul.agent", "http://localhost:" + agent.getAddress().getPort());
+        ConfigurationUtil.initialize(new ConfigurationImpl());
+    }
+
+    @Before
+    public void init() {
+        kvRequests.set(0);
+
+        discoveryUtil = new ConsulDiscoveryUtilImpl();
+        discoveryUtil.init();
+    }
+
+    @After
+    public void deregister() {
+        discoveryUtil.deregister();
+    }
+
+    @Test
+    public void failingGatewayWatchBacksOffWithoutRegistration() throws InterruptedException {
+        // no service is registered, only discovery is used
+        discoveryUtil.watchGatewayUrls("dev");
+
+        Thread.sleep(1000);
+
+        // with the default start retry delay of 500 ms, the watch is retried at most twice within a second;
+        // without backoff, it would be retried as fast as the agent responds
+        Assert.assertTrue("Gateway watch was retried " + kvRequests.get() + " times in a second.",
+                kvRequests.get() <= 3);
+    }
+}
@@ -26,6 +26,11 @@ import com.kumuluz.ee.discovery.annotations.DiscoverService;
 import com.kumuluz.ee.discovery.enums.AccessType;
 import com.kumuluz.ee.discovery.enums.ServiceType;
 import com.kumuluz.ee.discovery.exceptions.EtcdNotAvailableException;
+import com.kumuluz.ee.discovery.loadbalancing.LoadBalancer;
+import com.kumuluz.ee.discovery.loadbalancing.LoadBalancers;
+import com.kumuluz.ee.discovery.topology.Flow;
+import com.kumuluz.ee.discovery.topology.TopologyEvent;
+import com.kumuluz.ee.discovery.topology.TopologyPublishers;
 import com.kumuluz.ee.discovery.utils.*;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
@@ -50,6 +55,8 @@ import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 import java.util.logging.Logger;
 
 /**
@@ -69,12 +76,27 @@ public class Etcd2DiscoveryUtilImpl implements DiscoveryUtil {
     private List<Etcd2ServiceConfiguration> registeredServices;
     private Map<String, ScheduledFuture> registratorHandles;
 
-    private Map<String, Map<String, Etcd2Service>> serviceInstances;
-    private Map<String, List<String>> serviceVersions;
-    private Map<String, URL> gatewayUrls;
+    // instance state is shared between the watch listeners and request threads; values are immutable snapshots,
+    // which are replaced as a whole on every change, so lookups never lock and never observe partial updates
+    private ConcurrentMap<ServiceKey, Etcd2ServiceInstances> serviceInstances;
+    private ConcurrentMap<ServiceKey, List<String>> serviceVersions;
+    // gateway URL as a single element array, or an empty array if the gateway is not set
+    private ConcurrentMap<ServiceKey, URL[]> gatewayUrls;
 
-    private Map<String, Etcd2Service> lastKnownServices;
-    private Map<String, String> lastKnownVersions;
+    private ConcurrentMap<ServiceKey, Etcd2ServiceInstances> lastKnownServices;
+    private ConcurrentMap<ServiceKey, String> lastKnownVersions;
+
+    private VersionResolver versionResolver;
+    private TopologyPublishers topologyPublishers;
+
+    // concurrent cold lookups of the same key share a single etcd request
+    private SingleFlight<ServiceKey, Void> instanceLookups;
+    private SingleFlight<ServiceKey, Void> versionLookups;
+    private SingleFlight<ServiceKey, URL[]> gatewayLookups;
+
+    // services and version directories, which were recently not found in etcd
+    private NegativeLookupCache<ServiceKey> missingServices;
+    private NegativeLookupCache<ServiceKey> missingVersions;
 
     private EtcdClient etcd;
     private RetryPolicy initialRequestRetryPolicy;
@@ -83,17 +105,35 @@ public class Etcd2DiscoveryUtilImpl implements DiscoveryUtil {
 
     private boolean resilience;
 
+    // watch whole environments instead of separate keys
+    private boolean prefixWatch;
+    private Set<String> watchedEnvironments;
+    private int watchRetryDelay;
+
+    // applies watch events to the cache off the etcd client event loop, in order of arrival
+    private ExecutorService watchEventExecutor;
+
     @PostConstruct
     public void init() {
 
         this.registeredServices = new LinkedList<>();
         this.registratorHandles = new HashMap<>();
 
-        this.serviceInstances = new HashMap<>();
-        this.serviceVersions = new HashMap<>();
-        this.gatewayUrls = new HashMap<>();
-        this.lastKnownServices = new HashMap<>();
-        this.lastKnownVersions = new HashMap<>();
+        this.serviceInstances = new ConcurrentHashMap<>();
+        this.serviceVersions = new ConcurrentHashMap<>();
+        this.gatewayUrls = new ConcurrentHashMap<>();
+        this.lastKnownServices = new ConcurrentHashMap<>();
+        this.lastKnownVersions = new ConcurrentHashMap<>();
+
+        this.versionResolver = new VersionResolver(this);
+        this.topologyPublishers = new TopologyPublishers();
+
+        this.instanceLookups = new SingleFlight<>();
+        this.versionLookups = new SingleFlight<>();
+        this.gatewayLookups = new SingleFlight<>();
+
+        this.missingServices = NegativeLookupCache.fromConfiguration();
+        this.missingVersions = NegativeLookupCache.fromConfiguration();
 
         // get user credentials
         String etcdUsername = configurationUtil.get("kumuluzee.discovery.etcd.username").orElse(null);
@@ -162,6 +202,7 @@ public class Etcd2DiscoveryUtilImpl implements DiscoveryUtil {
 
             int startRetryDelay = InitializationUtils.getStartRetryDelayMs(configurationUtil, "etcd");
             int maxRetryDelay = InitializationUtils.getMaxRetryDelayMs(configurationUtil, "etcd");
+            this.watchRetryDelay = startRetryDelay;
 
             RetryPolicy defaultRetryPolicy = new RetryWithExponentialBackOff(startRetryDelay, -1,
                     maxRetryDelay);
@@ -193,84 +234,92 @@ public class Etcd2DiscoveryUtilImpl implements DiscoveryUtil {
         }
 
         this.clusterId = configurationUtil.get("kumuluzee.discovery.cluster").orElse(null);
-    }
 
-    @Override
-    public void register(String serviceName, String version, String environment, long ttl,
-                         long pingInterval, boolean singleton, String baseUrl, String serviceId, ServiceType serviceType) {
+        this.prefixWatch = configurationUtil.getBoolean("kumuluzee.discovery.etcd.prefix-watch").orElse(false);
+        this.watchedEnvironments = ConcurrentHashMap.newKeySet();
+
+        int watchQueueSize = configurationUtil.getInteger("kumuluzee.discovery.etcd.watch-queue-size").orElse(10000);
+        this.watchEventExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(watchQueueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "kumuluzee-discovery-etcd-watch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        InstanceSnapshotStore.fromConfiguration().ifPresent(instanceSnapshotStore -> {
+            restoreLastKnownServices(instanceSnapshotStore.load());
+            instanceSnapshotStore.schedule(scheduler, this::getInstanceSnapshot);
+        });
+    }
 
-        if (serviceType == null) {
-            serviceType = ServiceType.REST;
+    /**
+     * Uses instances from the snapshot as last known services, until instances are read from etcd.
+     */
+    private void restoreLastKnownServices(Map<ServiceKey, URL[]> snapshot) {
+        Map<ServiceKey, Map<String, Etcd2Service>> instances = new HashMap<>();
+        for (Map.Entry<ServiceKey, URL[]> entry : snapshot.entrySet()) {
+            ServiceKey key = entry.getKey();
+            Map<String, Etcd2Service> services = instances.computeIfAbsent(ServiceKey.of(key.getServiceName(),
+                    key.getVersion(), key.getEnvironment(), null), k -> new HashMap<>());
+            for (URL url : entry.getValue()) {
+                services.put(key.getServiceType() + "/" + url, new Etcd2Service(url, null, null,
+                        key.getServiceType()));
+            }
         }
 
-        if (baseUrl == null) {
-            baseUrl = CommonUtils.getBaseUrl(serviceType);
+        for (Map.Entry<ServiceKey, Map<String, Etcd2Service>> entry : instances.entrySet()) {
+            ServiceKey serviceKey = entry.getKey();
+            this.lastKnownServices.putIfAbsent(serviceKey, new Etcd2ServiceInstances(entry.getValue(),
+                    this.clusterId));
+            this.lastKnownVersions.putIfAbsent(ServiceKey.of(serviceKey.getServiceName(), null,
+                    serviceKey.getEnvironment(), null), serviceKey.getVersion());
         }
+    }
 
-        String containerUrl = configurationUtil.get("kumuluzee.container-url").orElse(null);
-        if (containerUrl != null) {
-            try {
-                containerUrl = new URL(containerUrl).toString();
-            } catch (MalformedURLException e) {
-                log.severe("Cannot parse kumuluzee.container-url. Exception: " + e.toString());
-                containerUrl = null;
-            }
-        }
-        if (this.clusterId != null || baseUrl == null || baseUrl.isEmpty()) {
-            // try to find my ip address
-            List<InetAddress> interfaceAddresses = new ArrayList<>();
-            try {
-                Enumeration<NetworkInterface> niEnum = NetworkInterface.getNetworkInterfaces();
-                while (niEnum.hasMoreElements()) {
-                    NetworkInterface ni = niEnum.nextElement();
-                    Enumeration<InetAddress> inetEnum = ni.getInetAddresses();
-                    while (inetEnum.hasMoreElements()) {
-                        interfaceAddresses.add(inetEnum.nextElement());
-                    }
-                }
-            } catch (SocketException e) {
-                e.printStackTrace();
-            }
-            interfaceAddresses.sort(new HostAddressComparator());
-            URL ipUrl = null;
+    /**
+     * Returns present instances of discovered services, or the last known instances of services without instances.
+     */
+    private Map<ServiceKey, URL[]> getInstanceSnapshot() {
+        Map<ServiceKey, URL[]> snapshot = new HashMap<>();
+        addToInstanceSnapshot(snapshot, this.lastKnownServices);
+        addToInstanceSnapshot(snapshot, this.serviceInstances);
 
-            Integer servicePort = CommonUtils.getServicePort(serviceType);
+        return snapshot;
+    }
 
-            for (int i = 0; i < interfaceAddresses.size() && ipUrl == null; i++) {
-                InetAddress addr = interfaceAddresses.get(i);
-                try {
-                    if (addr instanceof Inet4Address) {
-                        ipUrl = new URL("http://" + addr.getHostAddress() + ":" + servicePort);
-                    } else {
-                        ipUrl = new URL("http://[" + addr.getHostAddress().split("%")[0] + "]:" + servicePort);
-                    }
-                } catch (MalformedURLException e) {
-                    log.severe("Cannot parse URL. Exception: " + e.toString());
-                }
+    private static void addToInstanceSnapshot(Map<ServiceKey, URL[]> snapshot,
+                                              Map<ServiceKey, Etcd2ServiceInstances> services) {
+        for (Map.Entry<ServiceKey, Etcd2ServiceInstances> entry : services.entrySet()) {
+            ServiceKey key = entry.getKey();
+            if (entry.getValue().isEmpty()) {
+                continue;
             }
-            if (this.clusterId != null) {
-                if (containerUrl == null && ipUrl != null) {
-                    containerUrl = ipUrl.toString();
-                } else if (containerUrl == null) {
-                    log.severe("No container URL found, but running in container. All services will use service" +
-                            "URL. You can set container URL with configuration key kumuluzee.container-url");
-                }
-            }
-            if (baseUrl == null || baseUrl.isEmpty()) {
-                if (ipUrl != null) {
-                    log.warning("No service URL provided, using URL " + ipUrl.toString() +
-                            ". You should probably set service URL with configuration key kumuluzee.server.base-url");
-                    baseUrl = ipUrl.toString();
-                } else {
-                    log.severe("No service URL provided or found." +
-                            "Set service URL with configuration key kumuluzee.server.base-url");
-                    return;
+            for (ServiceType serviceType : ServiceType.values()) {
+                URL[] urls = entry.getValue().getUrls(serviceType);
+                if (urls.length > 0) {
+                    snapshot.put(ServiceKey.of(key.getServiceName(), key.getVersion(), key.getEnvironment(),
+                            serviceType), urls);
                 }
             }
         }
+    }
+
+    @Override
+    public void register(String serviceName, String version, String environment, long ttl,
+                         long pingInterval, boolean singleton, String baseUrl, String serviceId, ServiceType serviceType) {
+
+        if (serviceType == null) {
+            serviceType = ServiceType.REST;
+        }
+
+        ServiceUrls serviceUrls = ServiceUrls.detect(baseUrl, this.clusterId, serviceType).orElse(null);
+        if (serviceUrls == null) {
+            return;
+        }
 
         Etcd2ServiceConfiguration serviceConfiguration = new Etcd2ServiceConfiguration(serviceName, version,
-                environment, (int) ttl, singleton, baseUrl, containerUrl, this.clusterId, serviceId, serviceType);
+                environment, (int) ttl, singleton, serviceUrls.getBaseUrl(), serviceUrls.getContainerUrl(),
+                this.clusterId, serviceId, serviceType);
 
         this.registeredServices.add(serviceConfiguration);
 
@@ -294,6 +343,8 @@ public class Etcd2DiscoveryUtilImpl implements DiscoveryUtil {
             handle.cancel(true);
         }
 
+        this.watchEventExecutor.shutdown();
+
         if (etcd != null) {
             for (Etcd2ServiceConfiguration serviceConfiguration : this.registeredServices) {
                 log.info("Deregistering service with etcd. Service name: " + serviceConfiguration.getServiceName() +
@@ -348,105 +399,159 @@ public class Etcd2DiscoveryUtilImpl implements DiscoveryUtil {
     public Optional<List<URL>> getServiceInstances(String serviceName, String version,
                                                    String environment, AccessType accessType, ServiceType serviceType) {
 
-        version = CommonUtils.determineVersion(this, serviceName, version, environment, serviceType);
+        return Optional.of(Collections.unmodifiableList(Arrays.asList(getServiceInstanceUrls(serviceName, version,
+                environment, accessType, serviceType))));
+    }
 
-        if (!this.serviceInstances.containsKey(serviceName + "_" + version + "_" + environment)) {
+    /**
+     * Returns precomputed instance URLs of a service. The returned array is shared and must not be modified.
+     */
+    private URL[] getServiceInstanceUrls(String serviceName, String version, String environment,
+                                         AccessType accessType, ServiceType serviceType) {
+
+        version = versionResolver.resolve(serviceName, version, environment, serviceType);
+        ServiceKey serviceKey = ServiceKey.of(serviceName, version, environment, null);
+
+        if (!this.serviceInstances.containsKey(serviceKey) && !this.missingServices.isMissing(serviceKey)) {
+            instanceLookups.execute(serviceKey, () -> {
+                if (!this.serviceInstances.containsKey(serviceKey)) {
+                    EtcdKeysResponse etcdKeysResponse = Etcd2Utils.getEtcdDir(etcd,
+                            Etcd2Utils.getServiceKeyInstances(serviceKey.getEnvironment(),
+                                    serviceKey.getServiceName(), serviceKey.getVersion()),
+                            this.initialRequestRetryPolicy, this.resilience);
+
+                    if (etcdKeysResponse != null) {
+                        publishServiceInstances(serviceKey, serviceType, etcdKeysResponse);
+                    } else {
+                        this.missingServices.put(serviceKey);
+                    }
+                }
+                return null;
+            });
+        }
 
-            EtcdKeysResponse etcdKeysResponse = Etcd2Utils.getEtcdDir(etcd, Etcd2Utils.getServiceKeyInstances
-                    (environment, serviceName, version), this.initialRequestRetryPolicy, this.resilience);
+        return getKnownServiceInstanceUrls(serviceKey, accessType, serviceType, () -> getGatewayUrl(serviceKey));
+    }
 
-            HashMap<String, Etcd2Service> serviceUrls = new HashMap<>();
-            if (etcdKeysResponse != null) {
-                for (EtcdKeysResponse.EtcdNode node : etcdKeysResponse.getNode().getNodes()) {
+    /**
+     * Returns cached instance URLs of a service, falling back to the last known instances. Does not query etcd
+     * itself, the gateway URL is only requested from the given supplier for the gateway access type.
+     */
+    private URL[] getKnownServiceInstanceUrls(ServiceKey serviceKey, AccessType accessType, ServiceType serviceType,
+                                              Supplier<URL[]> gatewayUrlSupplier) {
+        String serviceName = serviceKey.getServiceName();
+
+        Etcd2ServiceInstances presentServices = this.serviceInstances.get(serviceKey);
+        if (presentServices == null || presentServices.isEmpty()) {
+            Etcd2ServiceInstances lastKnownService = this.lastKnownServices.get(serviceKey);
+            if (lastKnownService != null) {
+                // if no services are present, use the last known service
+                log.warning("No instances of " + serviceName + " found, using last known service.");
+                presentServices = lastKnownService;
+            }
+        }
 
-                    String url = null;
-                    String containerUrlString = null;
-                    String clusterId = null;
-                    boolean isActive = true;
-                    ServiceType type = null;
-                    for (EtcdKeysResponse.EtcdNode instanceNode : node.getNodes()) {
+        if (presentServices != null && !presentServices.isEmpty()) {
+            if (accessType == AccessType.GATEWAY) {
+                URL[] gatewayUrl = gatewayUrlSupplier.get();
+                if (gatewayUrl.length > 0) {
+                    return gatewayUrl;
+                }
+            }
 
-                        if ("url".equals(Etcd2Utils.getLastKeyLayer(instanceNode.getKey())) &&
-                                instanceNode.getValue() != null) {
-                            url = instanceNode.getValue();
-                        }
+            return presentServices.getUrls(serviceType);
+        }
 
-                        if ("containerUrl".equals(Etcd2Utils.getLastKeyLayer(instanceNode.getKey())) &&
-                                instanceNode.getValue() != null) {
-                            containerUrlString = instanceNode.getValue();
-                        }
+        return Etcd2ServiceInstances.NO_URLS;
+    }
 
-                        if ("clusterId".equals(Etcd2Utils.getLastKeyLayer(instanceNode.getKey())) &&
-                                instanceNode.getValue() != null && !instanceNode.getValue().isEmpty()) {
-                            clusterId = instanceNode.getValue();
-                        }
+    private void publishServiceInstances(ServiceKey serviceKey, ServiceType serviceType,
+                                         EtcdKeysResponse etcdKeysResponse) {
+        String serviceName = serviceKey.getServiceName();
+        String version = serviceKey.getVersion();
+        String environment = serviceKey.getEnvironment();
 
-                        if ("status".equals(Etcd2Utils.getLastKeyLayer(instanceNode.getKey())) &&
-                                "disabled".equals(instanceNode.getValue())) {
-                            isActive = false;
-                        }
+        HashMap<String, Etcd2Service> serviceUrls = new HashMap<>();
+        Etcd2KeyPath keyPath = new Etcd2KeyPath();
+        for (EtcdKeysResponse.EtcdNode node : etcdKeysResponse.getNode().getNodes()) {
 
-                        if ("type".equals(Etcd2Utils.getLastKeyLayer(instanceNode.getKey())) &&
-                                "type".equals(instanceNode.getValue())) {
-                            type = ServiceType.valueOf(instanceNode.getValue());
-                        }
+            String url = null;
+            String containerUrlString = null;
+            String clusterId = null;
+            boolean isActive = true;
+            ServiceType type = null;
+            for (EtcdKeysResponse.EtcdNode instanceNode : node.getNodes()) {
 
-                    }
-                    if (isActive && url != null) {
-                        try {
-                            URL containerUrl = (containerUrlString == null || containerUrlString.isEmpty()) ?
-                                    null : new URL(containerUrlString);
-                            serviceUrls.put(node.getKey() + "/url",
-                                    new Etcd2Service(new URL(url), containerUrl, clusterId, type));
-                        } catch (MalformedURLException e) {
-                            log.severe("Malformed URL exception: " + e.toString());
-                        }
-                    }
+                keyPath.parse(instanceNode.getKey());
+
+                if (keyPath.isLast("url") &&
+                        instanceNode.getValue() != null) {
+                    url = instanceNode.getValue();
+                }
+
+                if (keyPath.isLast("containerUrl") &&
+                        instanceNode.getValue() != null) {
+                    containerUrlString = instanceNode.getValue();
+                }
+
+                if (keyPath.isLast("clusterId") &&
+                        instanceNode.getValue() != null && !instanceNode.getValue().isEmpty()) {
+                    clusterId = instanceNode.getValue();
                 }
 
-                this.serviceInstances.put(serviceName + "_" + version + "_" + environment, serviceUrls);
+                if (keyPath.isLast("status") &&
+                        "disabled".equals(instanceNode.getValue())) {
+                    isActive = false;
+                }
+
+                if (keyPath.isLast("type") &&
+                        instanceNode.getValue() != null) {
+                    type = ServiceType.valueOf(instanceNode.getValue());
+                }
 
-                if (!this.serviceVersions.containsKey(serviceName + "_" + environment + "_" + serviceType)) {
-                    // we are already watching all versions, no need to watch specific version
-                    watchServiceInstances(Etcd2Utils.getServiceKeyInstances(environment, serviceName, version),
-                            etcdKeysResponse.etcdIndex + 1);
+            }
+            if (isActive && url != null) {
+                try {
+                    URL containerUrl = (containerUrlString == null || containerUrlString.isEmpty()) ?
+                            null : new URL(containerUrlString);
+                    serviceUrls.put(node.getKey() + "/url",
+                            new Etcd2Service(new URL(url), containerUrl, clusterId, type));
+                } catch (MalformedURLException e) {
+                    log.severe("Malformed URL exception: " + e.toString());
                 }
             }
         }
 
-        Map<String, Etcd2Service> presentServices = this.serviceInstances
-                .get(serviceName + "_" + version + "_" + environment);
-        if ((presentServices == null || presentServices.size() == 0) && this.lastKnownServices
-                .containsKey(serviceName + "_" + version + "_" + environment)) {
-            // if no services are present, use the last known service
-            log.warning("No instances of " + serviceName + " found, using last known service.");
-            presentServices = Collections.singletonMap("lastKnownService", this.lastKnownServices
-                    .get(serviceName + "_" + version + "_" + environment));
+        // publish the whole snapshot at once; a concurrent watch event may already have populated it
+        Etcd2ServiceInstances snapshot = new Etcd2ServiceInstances(serviceUrls, this.clusterId);
+        this.missingServices.invalidate(serviceKey);
+        if (this.serviceInstances.putIfAbsent(serviceKey, snapshot) == null) {
+            publishTopology(serviceKey, snapshot);
         }
 
-        List<URL> instances = new LinkedList<>();
+        if (!this.serviceVersions.containsKey(ServiceKey.of(serviceName, null, environment, serviceType))) {
+            // we are already watching all versions, no need to watch specific version
+            watchServiceInstances(Etcd2Utils.getServiceKeyInstances(environment, serviceName, version),
+                    etcdKeysResponse.etcdIndex + 1);
+        }
+    }
 
-        if (presentServices != null && presentServices.size() > 0) {
-            URL gatewayUrl = getGatewayUrl(serviceName, version, environment);
-            if (accessType == AccessType.GATEWAY && gatewayUrl != null) {
-                instances.add(gatewayUrl);
-            } else {
-                for (Etcd2Service service : presentServices.values()) {
-                    if(service.getServiceType() == serviceType) {
-                        if (this.clusterId != null && this.clusterId.equals(service.getClusterId())) {
-                            instances.add(service.getContainerUrl());
-                        } else {
-                            instances.add(service.getBaseUrl());
-                        }
-                    }
-                }
-            }
+    private URL[] getGatewayUrl(ServiceKey serviceKey) {
+        URL[] cachedGatewayUrl = this.gatewayUrls.get(serviceKey);
+        if (cachedGatewayUrl != null) {
+            return cachedGatewayUrl;
         }
-        return Optional.of(instances);
+
+        return gatewayLookups.execute(serviceKey, () -> loadGatewayUrl(serviceKey));
     }
 
-    private URL getGatewayUrl(String serviceName, String version, String environment) {
-        if (!this.gatewayUrls.containsKey(serviceName + "_" + version + "_" + environment)) {
+    private URL[] loadGatewayUrl(ServiceKey serviceKey) {
+        String serviceName = serviceKey.getServiceName();
+        String version = serviceKey.getVersion();
+        String environment = serviceKey.getEnvironment();
+
+        URL[] cachedGatewayUrl = this.gatewayUrls.get(serviceKey);
+        if (cachedGatewayUrl == null) {
             URL gatewayUrl = null;
 
             long index = 0;
@@ -477,138 +582,297 @@ public class Etcd2DiscoveryUtilImpl implements DiscoveryUtil {
                 log.severe("Etcd authentication exception. Cannot read given key: " + e);
             }
 
-            this.gatewayUrls.put(serviceName + "_" + version + "_" + environment, gatewayUrl);
-            watchServiceInstances(getGatewayKey(environment, serviceName, version), index);
-
-            return gatewayUrl;
+            return publishGatewayUrl(serviceKey, gatewayUrl, index);
         } else {
-            return this.gatewayUrls.get(serviceName + "_" + version + "_" + environment);
+            return cachedGatewayUrl;
         }
     }
 
+    private URL[] publishGatewayUrl(ServiceKey serviceKey, URL gatewayUrl, long index) {
+        URL[] gatewayUrlArray = (gatewayUrl == null) ? Etcd2ServiceInstances.NO_URLS : new URL[]{gatewayUrl};
+
+        URL[] presentGatewayUrl = this.gatewayUrls.putIfAbsent(serviceKey, gatewayUrlArray);
+        if (presentGatewayUrl != null) {
+            // another thread is already watching this key
+            return presentGatewayUrl;
+        }
+
+        watchServiceInstances(getGatewayKey(serviceKey.getEnvironment(), serviceKey.getServiceName(),
+                serviceKey.getVersion()), index);
+
+        return gatewayUrlArray;
+    }
+
     @Override
     public Optional<URL> getServiceInstance(String serviceName, String version, String
             environment, AccessType accessType, ServiceType serviceType) {
 
-        Optional<List<URL>> optionalServiceInstances = getServiceInstances(serviceName, version, environment,
-                accessType, serviceType);
-
-        return optionalServiceInstances.flatMap(CommonUtils::pickServiceInstanceRoundRobin);
+        return getServiceInstance(serviceName, version, environment, accessType, serviceType,
+                LoadBalancers.getDefault());
     }
 
     @Override
-    public Optional<URL> getServiceInstance(String serviceName, String version, String environment) {
-
-        return getServiceInstance(serviceName, version, environment, AccessType.DIRECT, ServiceType.REST);
+    public Optional<URL> getServiceInstance(String serviceName, String version, String environment,
+                                            AccessType accessType, ServiceType serviceType,
+                                            LoadBalancer loadBalancer) {
 
+        return loadBalancer.pick(ServiceKey.of(serviceName, version, environment, serviceType),
+                getServiceInstanceUrls(serviceName, version, environment, accessType, serviceType));
     }
 
     @Override
-    public Optional<List<String>> getServiceVersions(String serviceName, String environment, ServiceType serviceType) {
-        if (!this.serviceVersions.containsKey(serviceName + "_" + environment + "_" + serviceType)) {
-            EtcdKeysResponse etcdKeysResponse = Etcd2Utils.getEtcdDir(etcd, getServiceKeyVersions(environment,
-                    serviceName), this.initialRequestRetryPolicy, this.resilience);
+    public CompletionStage<Optional<URL>> getServiceInstanceAsync(String serviceName, String version,
+                                                                  String environment, AccessType accessType,
+                                                                  ServiceType serviceType,
+                                                                  LoadBalancer loadBalancer) {
+
+        return loadServiceVersionsAsync(serviceName, version, environment, serviceType)
+                .thenCompose(v -> {
+                    String resolvedVersion = version;
+                    if (!VersionResolver.isRange(version) || this.serviceVersions.containsKey(
+                            ServiceKey.of(serviceName, null, environment, serviceType))) {
+                        resolvedVersion = versionResolver.resolve(serviceName, version, environment, serviceType);
+                    }
 
-            if (etcdKeysResponse != null) {
+                    ServiceKey serviceKey = ServiceKey.of(serviceName, resolvedVersion, environment, null);
+                    return loadServiceInstancesAsync(serviceKey, accessType, serviceType)
+                            .thenApply(gatewayUrl -> getKnownServiceInstanceUrls(serviceKey, accessType,
+                                    serviceType, () -> gatewayUrl));
+                })
+                .thenApply(serviceInstanceUrls -> loadBalancer.pick(ServiceKey.of(serviceName, version, environment,
+                        serviceType), serviceInstanceUrls));
+    }
 
-                HashMap<ServiceType, LinkedList<String>> versions = new HashMap<>();
-                for (EtcdKeysResponse.EtcdNode versionNode : etcdKeysResponse.getNode().getNodes()) {
+    /**
+     * Loads registered versions of the service, if they are needed to resolve the version range and are not cached.
+     */
+    private CompletableFuture<Void> loadServiceVersionsAsync(String serviceName, String version, String environment,
+                                                             ServiceType serviceType) {
 
-                    String version = Etcd2Utils.getLastKeyLayer(versionNode.getKey());
+        ServiceKey versionsKey = ServiceKey.of(serviceName, null, environment, null);
+        if (!VersionResolver.isRange(version) || this.missingVersions.isMissing(versionsKey) ||
+                this.serviceVersions.containsKey(ServiceKey.of(serviceName, null, environment, serviceType))) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-                    EtcdKeysResponse.EtcdNode instanceParentNode = null;
-                    for (EtcdKeysResponse.EtcdNode instanceParentNodeCandidate : versionNode.getNodes()) {
-                        if (Etcd2Utils.getLastKeyLayer(instanceParentNodeCandidate.key).equals("instances")) {
-                            instanceParentNode = instanceParentNodeCandidate;
-                            break;
-                        }
-                    }
-                    if (instanceParentNode == null) {
-                        continue;
+        return versionLookups.executeAsync(versionsKey, () ->
+                Etcd2Utils.getEtcdDirAsync(etcd, getServiceKeyVersions(environment, serviceName),
+                        this.initialRequestRetryPolicy, this.resilience).thenAccept(etcdKeysResponse -> {
+                    if (etcdKeysResponse != null) {
+                        publishServiceVersions(serviceName, environment, etcdKeysResponse);
+                    } else {
+                        this.missingVersions.put(versionsKey);
                     }
+                }));
+    }
 
-                    for (EtcdKeysResponse.EtcdNode instanceNode : instanceParentNode.getNodes()) {
+    /**
+     * Loads instances of the service and, for the gateway access type, its gateway URL, if they are not cached. The
+     * returned future completes with the gateway URL, which is never read from etcd on the completing thread.
+     */
+    private CompletableFuture<URL[]> loadServiceInstancesAsync(ServiceKey serviceKey, AccessType accessType,
+                                                               ServiceType serviceType) {
 
-                        String url = null;
-                        String status = null;
-                        String containerUrlString = null;
-                        String clusterId = null;
-                        ServiceType type = null;
+        CompletableFuture<Void> instancesLoaded;
+        if (this.serviceInstances.containsKey(serviceKey) || this.missingServices.isMissing(serviceKey)) {
+            instancesLoaded = CompletableFuture.completedFuture(null);
+        } else {
+            instancesLoaded = instanceLookups.executeAsync(serviceKey, () ->
+                    Etcd2Utils.getEtcdDirAsync(etcd, Etcd2Utils.getServiceKeyInstances(serviceKey.getEnvironment(),
+                            serviceKey.getServiceName(), serviceKey.getVersion()), this.initialRequestRetryPolicy,
+                            this.resilience).thenAccept(etcdKeysResponse -> {
+                        if (etcdKeysResponse != null) {
+                            publishServiceInstances(serviceKey, serviceType, etcdKeysResponse);
+                        } else {
+                            this.missingServices.put(serviceKey);
+                        }
+                    }));
+        }
 
-                        for (EtcdKeysResponse.EtcdNode node : instanceNode.getNodes()) {
+        return instancesLoaded.thenCompose(v -> {
+            URL[] cachedGatewayUrl = this.gatewayUrls.get(serviceKey);
+            if (cachedGatewayUrl != null) {
+                return CompletableFuture.completedFuture(cachedGatewayUrl);
+            }
+            if (accessType != AccessType.GATEWAY || (!this.serviceInstances.containsKey(serviceKey) &&
+                    !this.lastKnownServices.containsKey(serviceKey))) {
+                return CompletableFuture.completedFuture(Etcd2ServiceInstances.NO_URLS);
+            }
 
-                            if ("url".equals(Etcd2Utils.getLastKeyLayer(node.getKey())) &&
-                                    node.getValue() != null) {
-                                url = node.getValue();
+            return gatewayLookups.executeAsync(serviceKey, () ->
+                    Etcd2Utils.getEtcdKeyAsync(etcd, getGatewayKey(serviceKey.getEnvironment(),
+                            serviceKey.getServiceName(), serviceKey.getVersion()), this.initialRequestRetryPolicy,
+                            this.resilience).thenApply(etcdKeysResponse -> {
+                        URL gatewayUrl = null;
+                        long index = 0;
+                        if (etcdKeysResponse != null) {
+                            index = etcdKeysResponse.getNode().getModifiedIndex();
+                            try {
+                                gatewayUrl = new URL(etcdKeysResponse.getNode().getValue());
+                            } catch (MalformedURLException e) {
+                                log.severe("Malformed URL exception: " + e.toString());
                             }
+                        }
 
-                            if ("containerUrl".equals(Etcd2Utils.getLastKeyLayer(node.getKey())) &&
-                                    node.getValue() != null) {
-                                containerUrlString = node.getValue();
-                            }
+                        return publishGatewayUrl(serviceKey, gatewayUrl, index);
+                    }));
+        });
+    }
 
-                            if ("clusterId".equals(Etcd2Utils.getLastKeyLayer(node.getKey())) &&
-                                    node.getValue() != null && !node.getValue().isEmpty()) {
-                                clusterId = node.getValue();
-                            }
+    @Override
+    public Flow.Publisher<TopologyEvent> getServiceTopology(String serviceName, String version, String environment,
+                                                            ServiceType serviceType) {
 
-                            if ("status".equals(Etcd2Utils.getLastKeyLayer(node.getKey())) &&
-                                    node.getValue() != null) {
-                                status = node.getValue();
-                            }
+        String resolvedVersion = versionResolver.resolve(serviceName, version, environment, serviceType);
 
-                            if ("type".equals(Etcd2Utils.getLastKeyLayer(node.getKey())) &&
-                                    node.getValue() != null) {
-                                type = ServiceType.valueOf(node.getValue());
-                            }
-                        }
+        return this.topologyPublishers.getPublisher(ServiceKey.of(serviceName, resolvedVersion, environment,
+                serviceType), () -> getServiceInstanceUrls(serviceName, resolvedVersion, environment,
+                AccessType.DIRECT, serviceType));
+    }
 
-                        if (url != null && !"disabled".equals(status)) {
+    @Override
+    public Optional<URL> getServiceInstance(String serviceName, String version, String environment) {
 
-                            // active instance, add to buffer
-                            try {
-                                if (!this.serviceInstances.containsKey(serviceName + "_" + version + "_" +
-                                        environment)) {
-                                    this.serviceInstances.put(serviceName + "_" + version + "_" + environment,
-                                            new HashMap<>());
-                                }
-                                URL containerUrl = (containerUrlString == null || containerUrlString.isEmpty()) ?
-                                        null : new URL(containerUrlString);
-                                this.serviceInstances.get(serviceName + "_" + version + "_" + environment)
-                                        .put(instanceNode.getKey() + "/url",
-                                                new Etcd2Service(new URL(url), containerUrl, clusterId, type));
-                            } catch (MalformedURLException e) {
-                                log.severe("Malformed URL exception: " + e.toString());
-                            }
+        return getServiceInstance(serviceName, version, environment, AccessType.DIRECT, ServiceType.REST);
 
-                            if(!versions.containsKey(type)) {
-                                versions.put(type, new LinkedList<>());
-                            }
-                            versions.get(type).add(version);
-                        }
+    }
 
+    @Override
+    public Optional<List<String>> getServiceVersions(String serviceName, String environment, ServiceType serviceType) {
+        ServiceKey versionsKey = ServiceKey.of(serviceName, null, environment, serviceType);
+        ServiceKey serviceKey = ServiceKey.of(serviceName, null, environment, null);
+        if (!this.serviceVersions.containsKey(versionsKey) && !this.missingVersions.isMissing(serviceKey)) {
+            versionLookups.execute(serviceKey, () -> {
+                if (!this.serviceVersions.containsKey(versionsKey)) {
+                    EtcdKeysResponse etcdKeysResponse = Etcd2Utils.getEtcdDir(etcd,
+                            getServiceKeyVersions(environment, serviceName), this.initialRequestRetryPolicy,
+                            this.resilience);
+
+                    if (etcdKeysResponse != null) {
+                        publishServiceVersions(serviceName, environment, etcdKeysResponse);
+                    } else {
+                        this.missingVersions.put(serviceKey);
                     }
                 }
-                for(ServiceType st: versions.keySet()) {
-                    this.serviceVersions.put(serviceName + "_" + environment + "_" + serviceType, versions.get(st));
-                }
-                watchServiceInstances(getServiceKeyVersions(environment, serviceName),
-                        etcdKeysResponse.etcdIndex + 1);
-            }
+                return null;
+            });
         }
 
-        List<String> presentVersions = this.serviceVersions.get(serviceName + "_" + environment + "_" + serviceType);
+        List<String> presentVersions = this.serviceVersions.get(versionsKey);
 
         if(presentVersions == null || presentVersions.size() == 0) {
             // we check last known version if there are no present versions left
-            presentVersions = new LinkedList<>();
-            String lastKnownVersion = lastKnownVersions.get(serviceName + "_" + environment);
+            String lastKnownVersion = lastKnownVersions.get(serviceKey);
             if (lastKnownVersion != null) {
-                presentVersions.add(lastKnownVersion);
+                presentVersions = Collections.singletonList(lastKnownVersion);
+            } else {
+                presentVersions = Collections.emptyList();
             }
         }
 
-        return Optional.ofNullable(presentVersions);
+        return Optional.of(presentVersions);
+    }
+
+    private void publishServiceVersions(String serviceName, String environment, EtcdKeysResponse etcdKeysResponse) {
+
+        Map<ServiceKey, Map<String, Etcd2Service>> instances = new HashMap<>();
+        Map<ServiceType, List<String>> versions = new EnumMap<>(ServiceType.class);
+        for (ServiceType st : ServiceType.values()) {
+            versions.put(st, new LinkedList<>());
+        }
+        Etcd2KeyPath keyPath = new Etcd2KeyPath();
+        for (EtcdKeysResponse.EtcdNode versionNode : etcdKeysResponse.getNode().getNodes()) {
+
+            String version = keyPath.parse(versionNode.getKey()).getLast();
+
+            EtcdKeysResponse.EtcdNode instanceParentNode = null;
+            for (EtcdKeysResponse.EtcdNode instanceParentNodeCandidate : versionNode.getNodes()) {
+                if (keyPath.parse(instanceParentNodeCandidate.key).isLast("instances")) {
+                    instanceParentNode = instanceParentNodeCandidate;
+                    break;
+                }
+            }
+            if (instanceParentNode == null) {
+                continue;
+            }
+
+            for (EtcdKeysResponse.EtcdNode instanceNode : instanceParentNode.getNodes()) {
+
+                String url = null;
+                String status = null;
+                String containerUrlString = null;
+                String clusterId = null;
+                ServiceType type = null;
+
+                for (EtcdKeysResponse.EtcdNode node : instanceNode.getNodes()) {
+
+                    keyPath.parse(node.getKey());
+
+                    if (keyPath.isLast("url") &&
+                            node.getValue() != null) {
+                        url = node.getValue();
+                    }
+
+                    if (keyPath.isLast("containerUrl") &&
+                            node.getValue() != null) {
+                        containerUrlString = node.getValue();
+                    }
+
+                    if (keyPath.isLast("clusterId") &&
+                            node.getValue() != null && !node.getValue().isEmpty()) {
+                        clusterId = node.getValue();
+                    }
+
+                    if (keyPath.isLast("status") &&
+                            node.getValue() != null) {
+                        status = node.getValue();
+                    }
+
+                    if (keyPath.isLast("type") &&
+                            node.getValue() != null) {
+                        type = ServiceType.valueOf(node.getValue());
+                    }
+                }
+
+                if (url != null && !"disabled".equals(status)) {
+
+                    // active instance, add to buffer
+                    try {
+                        URL containerUrl = (containerUrlString == null || containerUrlString.isEmpty()) ?
+                                null : new URL(containerUrlString);
+                        instances.computeIfAbsent(ServiceKey.of(serviceName, version, environment, null),
+                                k -> new HashMap<>()).put(instanceNode.getKey() + "/url",
+                                new Etcd2Service(new URL(url), containerUrl, clusterId, type));
+                    } catch (MalformedURLException e) {
+                        log.severe("Malformed URL exception: " + e.toString());
+                    }
+
+                    if (type != null) {
+                        versions.get(type).add(version);
+                    }
+                }
+
+            }
+        }
+        for (Map.Entry<ServiceKey, Map<String, Etcd2Service>> entry : instances.entrySet()) {
+            // merge with the instances, already known for the particular version
+            Etcd2ServiceInstances snapshot = this.serviceInstances.merge(entry.getKey(),
+                    new Etcd2ServiceInstances(entry.getValue(), this.clusterId), (current, loaded) -> {
+                        Map<String, Etcd2Service> merged = new HashMap<>(current.getInstances());
+                        merged.putAll(loaded.getInstances());
+                        return new Etcd2ServiceInstances(merged, this.clusterId);
+                    });
+            this.missingServices.invalidate(entry.getKey());
+            publishTopology(entry.getKey(), snapshot);
+        }
+        for (Map.Entry<ServiceType, List<String>> entry : versions.entrySet()) {
+            this.serviceVersions.put(ServiceKey.of(serviceName, null, environment, entry.getKey()),
+                    Collections.unmodifiableList(entry.getValue()));
+        }
+        this.missingVersions.invalidate(ServiceKey.of(serviceName, null, environment, null));
+        versionResolver.invalidate(serviceName, environment);
+        watchServiceInstances(getServiceKeyVersions(environment, serviceName),
+                etcdKeysResponse.etcdIndex + 1);
     }
 
     @Override
@@ -620,9 +884,10 @@ public class Etcd2DiscoveryUtilImpl implements DiscoveryUtil {
         EtcdKeysResponse etcdKeysResponse = Etcd2Utils.getEtcdDir(etcd, key, this.resilience);
         if (etcdKeysResponse != null) {
 
+            Etcd2KeyPath keyPath = new Etcd2KeyPath();
             for (EtcdKeysResponse.EtcdNode instance : etcdKeysResponse.getNode().getNodes()) {
                 for (EtcdKeysResponse.EtcdNode node : instance.getNodes()) {
-                    if ("url".equals(Etcd2Utils.getLastKeyLayer(node.getKey())) &&
+                    if (keyPath.parse(node.getKey()).isLast("url") &&
                             node.getValue().equals(url.toString())) {
                         log.info("Disabling service instance: " + instance.getKey());
                         putEtcdKey(instance.getKey() + "/status", "disabled");
@@ -634,6 +899,11 @@ public class Etcd2DiscoveryUtilImpl implements DiscoveryUtil {
 
     private void watchServiceInstances(String key, long index) {
 
+        if (this.prefixWatch) {
+            watchEnvironment(new Etcd2KeyPath().parse(key).getEnvironment(), index);
+            return;
+        }
+
         if (etcd != null) {
 
             log.info("Initialising watch for key: " + key);
@@ -660,318 +930,445 @@ public class Etcd2DiscoveryUtilImpl implements DiscoveryUtil {
 
                 EtcdKeysResponse.EtcdNode node = promise.getNow().getNode();
 
-                // get service name, version and environment from key
-                String serviceName = getServiceNameFromKey(node.getKey());
-                String version = getVersionFromKey(node.getKey());
-                String environment = getEnvironmentFromKey(node.getKey());
-                ServiceType serviceType = null;
-                String[] splittedKeys = node.getKey().split("/");
-                String typeKey = "";
-                if(splittedKeys.length == 7) {
-                    typeKey = node.getKey() + "type";
-                } else {
-                    typeKey = getKeyOneLayerUp(node.getKey()) + "type";
-                }
-                try {
-                    EtcdKeysResponse response = etcd.get(typeKey).send().get();
-                    serviceType = ServiceType.valueOf(response.getNode().getValue());
-                } catch (Exception e) {
-                    if(this.serviceInstances.containsKey(serviceName + "_" + version + "_" + environment) &&
-                            this.serviceInstances.get(serviceName + "_" + version + "_" + environment).containsKey(node.getKey() + "/url")) {
-                        serviceType = this.serviceInstances.get(serviceName + "_" + version + "_" + environment).get(node.getKey() + "/url").getServiceType();
-                    }
-                    if(this.serviceInstances.containsKey(serviceName + "_" + version + "_" + environment) &&
-                            this.serviceInstances.get(serviceName + "_" + version + "_" + environment).containsKey(node.getKey())) {
-                        serviceType = this.serviceInstances.get(serviceName + "_" + version + "_" + environment).get(node.getKey()).getServiceType();
+                Etcd2KeyPath nodePath = new Etcd2KeyPath().parse(node.getKey());
+                dispatchWatchEvent(() -> handleWatchEvent(nodePath, node), () -> {
+                    if (new Etcd2KeyPath().parse(key).isVersionsKey() ||
+                            !isWatchingVersions(nodePath.getServiceName(), nodePath.getEnvironment())) {
+                        // does not set watch if key is for specific version and we are already watching all versions
+                        watchServiceInstances(key, node.getModifiedIndex() + 1);
                     }
+                });
+            });
+
+        } else {
+            log.severe("etcd not initialised.");
+        }
+    }
+
+    /**
+     * Starts the watch of all services in the environment, unless it is already running. Used instead of watches of
+     * separate keys, when <code>kumuluzee.discovery.etcd.prefix-watch</code> is enabled.
+     */
+    private void watchEnvironment(String environment, long index) {
+        if (this.watchedEnvironments.add(environment)) {
+            watchEnvironmentPrefix(environment, index);
+        }
+    }
+
+    private void watchEnvironmentPrefix(String environment, long index) {
+
+        if (etcd == null) {
+            log.severe("etcd not initialised.");
+            return;
+        }
+
+        String prefix = "/environments/" + environment + "/services";
+
+        log.info("Initialising watch for key prefix: " + prefix);
+
+        EtcdResponsePromise<EtcdKeysResponse> responsePromise;
+        try {
+            responsePromise = etcd.getDir(prefix).recursive().waitForChange(index).send();
+        } catch (IOException e) {
+            log.severe("IO Exception. Cannot watch given key prefix: " + e);
+            scheduler.schedule(() -> watchEnvironmentPrefix(environment, index), this.watchRetryDelay,
+                    TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        responsePromise.addListener((ResponsePromise<EtcdKeysResponse> promise) -> {
+            Throwable t = promise.getException();
+            if (t instanceof EtcdException && ((EtcdException) t).isErrorCode(EtcdErrorCode.EventIndexCleared)) {
+                // index to old, reset watch to new index
+                watchEnvironmentPrefix(environment, ((EtcdException) t).getIndex());
+                return;
+            }
+            if (t != null) {
+                // a single watch serves all services, it must not be lost on errors
+                log.warning("Exception in etcd watch of " + prefix + ": " + t);
+                scheduler.schedule(() -> watchEnvironmentPrefix(environment, index), this.watchRetryDelay,
+                        TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            EtcdKeysResponse.EtcdNode node = promise.getNow().getNode();
+
+            dispatchWatchEvent(() -> {
+                Etcd2KeyPath nodePath = new Etcd2KeyPath().parse(node.getKey());
+                if (getWatchedKey(nodePath) != null) {
+                    handleWatchEvent(nodePath, node);
+                } else {
+                    // the service is not cached, but it may have been recently looked up and not found
+                    invalidateMissingService(nodePath);
                 }
+            }, () -> watchEnvironmentPrefix(environment, node.getModifiedIndex() + 1));
+        });
+    }
 
-                if (serviceName != null && version != null && environment != null) {
-
-                    // url have changed: added or deleted
-                    if ("url".equals(Etcd2Utils.getLastKeyLayer(node.getKey()))) {
-
-                        if (node.getValue() == null) {
-                            log.info("Service instance deleted: " + node.getKey());
-                            if (this.serviceInstances.get(serviceName + "_" + version + "_" + environment)
-                                    .size() == 1) {
-                                // if removing last service, save it to separate buffer
-                                // this service will be returned, if no other services are present
-                                this.lastKnownServices.put(serviceName + "_" + version + "_" + environment,
-                                        this.serviceInstances.get(serviceName + "_" + version + "_" + environment)
-                                                .get(node.getKey()));
-                                this.lastKnownVersions.put(serviceName + "_" + environment, version);
-                            }
-                            this.serviceInstances.get(serviceName + "_" + version + "_" + environment).remove(node
-                                    .getKey());
-                        } else {
-                            log.info("Service instance added: " + node.getKey() + " Value: " + node.getValue());
-                            try {
-                                if (!this.serviceInstances.containsKey(serviceName + "_" + version + "_" +
-                                        environment)) {
-                                    this.serviceInstances.put(serviceName + "_" + version + "_" + environment,
-                                            new HashMap<>());
-                                }
-                                Etcd2Service etcd2Service = new Etcd2Service(new URL(node.getValue()), null,
-                                        null, null);
-                                if (this.serviceInstances.get(serviceName + "_" + version + "_" + environment)
-                                        .containsKey(node.getKey())) {
-                                    etcd2Service.setContainerUrl(this.serviceInstances.get(serviceName + "_" + version
-                                            + "_" + environment).get(node.getKey()).getContainerUrl());
-                                    etcd2Service.setClusterId(this.serviceInstances.get(serviceName + "_" + version
-                                            + "_" + environment).get(node.getKey()).getClusterId());
-                                    etcd2Service.setServiceType(this.serviceInstances.get(serviceName + "_" + version
-                                            + "_" + environment).get(node.getKey()).getServiceType());
-                                }
-                                this.serviceInstances.get(serviceName + "_" + version + "_" + environment).put(node
-                                        .getKey(), etcd2Service);
-                            } catch (MalformedURLException e) {
-                                log.severe("Malformed URL exception: " + e.toString());
-                            }
-                        }
+    /**
+     * Returns the key, a separate watch would have been set on for the changed node, or null if the node belongs to
+     * a service, which is not cached and should be ignored.
+     */
+    private String getWatchedKey(Etcd2KeyPath nodePath) {
+        if (nodePath.getDepth() < 5) {
+            return null;
+        }
 
-                    }
+        String environment = nodePath.getEnvironment();
+        String serviceName = nodePath.getServiceName();
+        String version = nodePath.getVersion();
+        ServiceKey serviceKey = ServiceKey.of(serviceName, version, environment, null);
 
-                    //type detection
-                    if ("type".equals(Etcd2Utils.getLastKeyLayer(node.getKey()))) {
-                        if (node.getValue() != null) {
-                            try {
-                                if (!this.serviceInstances.containsKey(serviceName + "_" + version + "_" +
-                                        environment)) {
-                                    this.serviceInstances.put(serviceName + "_" + version + "_" + environment,
-                                            new HashMap<>());
-                                }
-                                String instanceMapKey = getKeyOneLayerUp(node.getKey()) + "url";
-                                Etcd2Service etcd2Service = new Etcd2Service(null, null,
-                                        null, ServiceType.valueOf(node.getValue()));
-                                if (this.serviceInstances.get(serviceName + "_" + version + "_" + environment)
-                                        .containsKey(instanceMapKey)) {
-                                    etcd2Service.setBaseUrl(this.serviceInstances.get(serviceName + "_" + version
-                                            + "_" + environment).get(instanceMapKey).getBaseUrl());
-                                    etcd2Service.setContainerUrl(this.serviceInstances.get(serviceName + "_" + version
-                                            + "_" + environment).get(instanceMapKey).getContainerUrl());
-                                    etcd2Service.setClusterId(this.serviceInstances.get(serviceName + "_" + version
-                                            + "_" + environment).get(instanceMapKey).getClusterId());
-                                }
-                                this.serviceInstances.get(serviceName + "_" + version + "_" + environment).put(instanceMapKey, etcd2Service);
-                            } catch (Exception e) {
-                                log.severe(e.toString());
-                            }
-                        }
-                    }
+        if (nodePath.isLast("gatewayUrl")) {
+            return this.gatewayUrls.containsKey(serviceKey) ?
+                    getGatewayKey(environment, serviceName, version) : null;
+        }
 
-                    // container url added or deleted
-                    if ("containerUrl".equals(Etcd2Utils.getLastKeyLayer(node.getKey()))) {
-                        if (node.getValue() == null) {
-                            Etcd2Service service = this.serviceInstances.get(serviceName + "_" + version + "_" +
-                                    environment).get(getKeyOneLayerUp(node.getKey()) + "url");
-                            if (service != null) {
-                                log.info("Service container url deleted: " + node.getKey());
-                                service.setContainerUrl(null);
-                                this.serviceInstances.get(serviceName + "_" + version + "_" +
-                                        environment).put(getKeyOneLayerUp(node.getKey()) + "url", service);
-                            }
-                        } else {
-                            log.info("Service container url added: " + node.getKey() + " Value: " + node.getValue());
-                            try {
-                                if (!this.serviceInstances.containsKey(serviceName + "_" + version + "_" +
-                                        environment)) {
-                                    this.serviceInstances.put(serviceName + "_" + version + "_" + environment,
-                                            new HashMap<>());
-                                }
-                                String instanceMapKey = getKeyOneLayerUp(node.getKey()) + "url";
-                                Etcd2Service etcd2Service = new Etcd2Service(null, new URL(node.getValue()),
-                                        null, null);
-                                if (this.serviceInstances.get(serviceName + "_" + version + "_" + environment)
-                                        .containsKey(instanceMapKey)) {
-                                    etcd2Service.setBaseUrl(this.serviceInstances.get(serviceName + "_" + version
-                                            + "_" + environment).get(instanceMapKey).getBaseUrl());
-                                    etcd2Service.setClusterId(this.serviceInstances.get(serviceName + "_" + version
-                                            + "_" + environment).get(instanceMapKey).getClusterId());
-                                    etcd2Service.setServiceType(this.serviceInstances.get(serviceName + "_" + version
-                                            + "_" + environment).get(node.getKey()).getServiceType());
-                                }
-                                this.serviceInstances.get(serviceName + "_" + version + "_" + environment)
-                                        .put(instanceMapKey, etcd2Service);
-                            } catch (MalformedURLException e) {
-                                log.severe("Malformed URL exception: " + e.toString());
-                            }
-                        }
-                    }
+        if (isWatchingVersions(serviceName, environment)) {
+            return getServiceKeyVersions(environment, serviceName);
+        }
 
-                    if ("clusterId".equals(Etcd2Utils.getLastKeyLayer(node.getKey()))) {
-                        if (node.getValue() == null) {
-                            Etcd2Service service = this.serviceInstances.get(serviceName + "_" + version + "_" +
-                                    environment).get(getKeyOneLayerUp(node.getKey()) + "url");
-                            if (service != null) {
-                                log.info("Service container id deleted: " + node.getKey());
-                                service.setClusterId(null);
-                                this.serviceInstances.get(serviceName + "_" + version + "_" +
-                                        environment).put(getKeyOneLayerUp(node.getKey()) + "url", service);
-                            }
-                        } else {
-                            log.info("Service container id added: " + node.getKey() + " Value: " + node.getValue());
+        return this.serviceInstances.containsKey(serviceKey) ?
+                Etcd2Utils.getServiceKeyInstances(environment, serviceName, version) : null;
+    }
 
-                            if (!this.serviceInstances.containsKey(serviceName + "_" + version + "_" +
-                                    environment)) {
-                                this.serviceInstances.put(serviceName + "_" + version + "_" + environment,
-                                        new HashMap<>());
-                            }
-                            String instanceMapKey = getKeyOneLayerUp(node.getKey()) + "url";
-                            Etcd2Service etcd2Service = new Etcd2Service(null, null,
-                                    node.getValue(), null);
-                            if (this.serviceInstances.get(serviceName + "_" + version + "_" + environment)
-                                    .containsKey(instanceMapKey)) {
-                                etcd2Service.setBaseUrl(this.serviceInstances.get(serviceName + "_" + version
-                                        + "_" + environment).get(instanceMapKey).getBaseUrl());
-                                etcd2Service.setContainerUrl(this.serviceInstances.get(serviceName + "_" + version
-                                        + "_" + environment).get(instanceMapKey).getContainerUrl());
-                                etcd2Service.setServiceType(this.serviceInstances.get(serviceName + "_" + version
-                                        + "_" + environment).get(node.getKey()).getServiceType());
-                            }
-                            this.serviceInstances.get(serviceName + "_" + version + "_" + environment)
-                                    .put(instanceMapKey, etcd2Service);
-                        }
-                    }
+    /**
+     * Removes the service, the changed node belongs to, from the caches of missing services and versions, so that it
+     * is looked up again before the negative cache entry expires.
+     */
+    private void invalidateMissingService(Etcd2KeyPath nodePath) {
+        String serviceName = nodePath.getServiceName();
+        String environment = nodePath.getEnvironment();
+        if (serviceName == null || environment == null) {
+            return;
+        }
 
-                    // gatewayUrl changed: added, modified or deleted
-                    if ("gatewayUrl".equals(Etcd2Utils.getLastKeyLayer(node.getKey()))) {
-                        if (node.getValue() == null &&
-                                this.gatewayUrls.containsKey(serviceName + "_" + version + "_" + environment)) {
-                            log.info("Gateway URL deleted: " + node.getKey());
-                            this.gatewayUrls.remove(serviceName + "_" + version + "_" + environment);
-                        } else {
-                            log.info("Gateway URL added or modified: " + node.getKey() + " Value: " +
-                                    node.getValue());
+        this.missingVersions.invalidate(ServiceKey.of(serviceName, null, environment, null));
+        if (nodePath.getVersion() != null) {
+            this.missingServices.invalidate(ServiceKey.of(serviceName, nodePath.getVersion(), environment, null));
+        }
+    }
 
-                            URL gatewayUrl = null;
+    /**
+     * Hands the watch event off to the watch event worker and re-arms the watch, without blocking the etcd client event
+     * loop. If the event queue is full, both are retried after the start retry delay; the watch index is kept, so no
+     * events are lost while the worker catches up.
+     *
+     * @param handler applies the event to the cache, executed on the worker
+     * @param rearm   re-arms the watch, executed once the event is queued
+     */
+    private void dispatchWatchEvent(Runnable handler, Runnable rearm) {
+        if (this.watchEventExecutor.isShutdown()) {
+            // deregistered, watches are not re-armed
+            return;
+        }
 
-                            try {
-                                gatewayUrl = new URL(node.getValue());
-                            } catch (MalformedURLException e) {
-                                log.severe("Malformed URL exception: " + e.toString());
-                            }
+        try {
+            this.watchEventExecutor.execute(handler);
+        } catch (RejectedExecutionException e) {
+            log.warning("Etcd watch event queue is full, delaying watch.");
+            scheduler.schedule(() -> dispatchWatchEvent(handler, rearm), this.watchRetryDelay,
+                    TimeUnit.MILLISECONDS);
+            return;
+        }
 
-                            this.gatewayUrls.put(serviceName + "_" + version + "_" + environment, gatewayUrl);
-                        }
+        rearm.run();
+    }
+
+    private boolean isWatchingVersions(String serviceName, String environment) {
+        for (ServiceType serviceType : ServiceType.values()) {
+            if (this.serviceVersions.containsKey(ServiceKey.of(serviceName, null, environment, serviceType))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Loads the type of an instance, whose url was added before its type was known, without blocking the watch event
+     * worker. The type is applied on the worker, unless a type event has already set it.
+     *
+     * @param serviceKey service key of the instance
+     * @param urlPath    parsed url key of the instance
+     * @param urlKey     url key of the instance
+     */
+    private void loadServiceTypeAsync(ServiceKey serviceKey, Etcd2KeyPath urlPath, String urlKey) {
+        Etcd2Utils.getEtcdKeyAsync(etcd, urlPath.getParent() + "type", this.initialRequestRetryPolicy, true)
+                .thenAccept(response -> {
+                    if (response == null || response.getNode().getValue() == null) {
+                        return;
                     }
 
-                    // status has changed: set to disabled
-                    if ("status".equals(Etcd2Utils.getLastKeyLayer(node.getKey())) &&
-                            "disabled".equals(node.getValue())) {
-                        log.info("Service instance disabled: " + node.getKey());
-                        this.serviceInstances.get(serviceName + "_" + version + "_" + environment).remove
-                                (getKeyOneLayerUp(node.getKey()) + "url");
+                    ServiceType type;
+                    try {
+                        type = ServiceType.valueOf(response.getNode().getValue());
+                    } catch (IllegalArgumentException e) {
+                        log.severe(e.toString());
+                        return;
                     }
 
-                    // node's TTL expired
-                    if (node.getTTL() == 0 && this.serviceInstances.containsKey(serviceName + "_" + version + "_" +
-                            environment) && this.serviceInstances.get(serviceName + "_" + version + "_" +
-                            environment).containsKey(node.getKey() + "/url")) {
-                        log.info("Service instance TTL expired: " + node.getKey());
-                        if (this.serviceInstances.get(serviceName + "_" + version + "_" + environment).size() == 1) {
-                            // if removing last service, save it to separate buffer
-                            // this service will be returned, if no other services are present
-                            this.lastKnownServices.put(serviceName + "_" + version + "_" + environment,
-                                    this.serviceInstances.get(serviceName + "_" + version + "_" + environment)
-                                            .get(node.getKey() + "/url"));
-                            this.lastKnownVersions.put(serviceName + "_" + environment, version);
+                    dispatchWatchEvent(() -> {
+                        updateServiceInstance(serviceKey, urlKey, service -> (service == null ||
+                                service.getServiceType() != null) ? service : service.withServiceType(type));
+                        updateServiceVersions(urlPath.getServiceName(), urlPath.getVersion(),
+                                urlPath.getEnvironment());
+                    }, () -> {
+                    });
+                });
+    }
+
+    /**
+     * Applies a change of the node to the cache. Called on the watch event worker.
+     *
+     * @param nodePath parsed key of the changed node
+     * @param node     changed node
+     */
+    private void handleWatchEvent(Etcd2KeyPath nodePath, EtcdKeysResponse.EtcdNode node) {
+
+        // get service name, version and environment from key
+        String serviceName = nodePath.getServiceName();
+        String version = nodePath.getVersion();
+        String environment = nodePath.getEnvironment();
+        ServiceKey serviceKey = ServiceKey.of(serviceName, version, environment, null);
+
+        if (serviceName != null && version != null && environment != null) {
+
+            // url have changed: added or deleted
+            if (nodePath.isLast("url")) {
+
+                if (node.getValue() == null) {
+                    log.info("Service instance deleted: " + node.getKey());
+                    removeServiceInstance(serviceKey, node.getKey());
+                } else {
+                    log.info("Service instance added: " + node.getKey() + " Value: " + node.getValue());
+                    try {
+                        URL baseUrl = new URL(node.getValue());
+                        updateServiceInstance(serviceKey, node.getKey(), service -> (service == null) ?
+                                new Etcd2Service(baseUrl, null, null, null) : service.withBaseUrl(baseUrl));
+
+                        // the type is registered before the url, so it is usually already cached; if not, the
+                        // instance is kept without a type until the type is loaded or its type event arrives
+                        Map<String, Etcd2Service> presentServices = getPresentServices(serviceKey);
+                        Etcd2Service service = (presentServices == null) ? null :
+                                presentServices.get(node.getKey());
+                        if (service != null && service.getServiceType() == null) {
+                            loadServiceTypeAsync(serviceKey, nodePath, node.getKey());
                         }
-                        this.serviceInstances.get(serviceName + "_" + version + "_" + environment).remove(node.getKey
-                                () + "/url");
+                    } catch (MalformedURLException e) {
+                        log.severe("Malformed URL exception: " + e.toString());
                     }
+                }
 
-                    // if we are watching all versions, update serviceVersions
-                    if (isKeyForVersions(key)) {
-                        if (this.serviceVersions.containsKey(serviceName + "_" + environment + "_" + serviceType)) {
-                            List<String> versions = this.serviceVersions.get(serviceName + "_" + environment + "_" + serviceType);
-                            if (versions.contains(version) &&
-                                    this.serviceInstances.get(serviceName + "_" + version + "_" + environment)
-                                            .isEmpty()) {
-                                // version was removed and no other instances of this version exist, remove version
-                                versions.remove(version);
-                            } else if (!versions.contains(version) &&
-                                    (!this.serviceInstances.containsKey(serviceName + "_" + version + "_" +
-                                            environment) ||
-                                            !this.serviceInstances.get(serviceName + "_" + version + "_" +
-                                                    environment).isEmpty())) {
-                                // instance of new version was added
-                                versions.add(version);
-                            }
-                            this.serviceVersions.put(serviceName + "_" + environment + "_" + serviceType, versions);
-                        }
+            }
+
+            //type detection
+            if (nodePath.isLast("type")) {
+                if (node.getValue() != null) {
+                    try {
+                        ServiceType type = ServiceType.valueOf(node.getValue());
+                        updateServiceInstance(serviceKey, nodePath.getParent() + "url",
+                                service -> (service == null) ? new Etcd2Service(null, null, null, type) :
+                                        service.withServiceType(type));
+                    } catch (Exception e) {
+                        log.severe(e.toString());
                     }
+                }
+            }
 
+            // container url added or deleted
+            if (nodePath.isLast("containerUrl")) {
+                if (node.getValue() == null) {
+                    Map<String, Etcd2Service> presentServices = getPresentServices(serviceKey);
+                    if (presentServices != null &&
+                            presentServices.containsKey(nodePath.getParent() + "url")) {
+                        log.info("Service container url deleted: " + node.getKey());
+                        updateServiceInstance(serviceKey, nodePath.getParent() + "url",
+                                service -> (service == null) ? null : service.withContainerUrl(null));
+                    }
+                } else {
+                    log.info("Service container url added: " + node.getKey() + " Value: " + node.getValue());
+                    try {
+                        URL containerUrl = new URL(node.getValue());
+                        updateServiceInstance(serviceKey, nodePath.getParent() + "url",
+                                service -> (service == null) ?
+                                        new Etcd2Service(null, containerUrl, null, null) :
+                                        service.withContainerUrl(containerUrl));
+                    } catch (MalformedURLException e) {
+                        log.severe("Malformed URL exception: " + e.toString());
+                    }
                 }
+            }
+
+            if (nodePath.isLast("clusterId")) {
+                if (node.getValue() == null) {
+                    Map<String, Etcd2Service> presentServices = getPresentServices(serviceKey);
+                    if (presentServices != null &&
+                            presentServices.containsKey(nodePath.getParent() + "url")) {
+                        log.info("Service container id deleted: " + node.getKey());
+                        updateServiceInstance(serviceKey, nodePath.getParent() + "url",
+                                service -> (service == null) ? null : service.withClusterId(null));
+                    }
+                } else {
+                    log.info("Service container id added: " + node.getKey() + " Value: " + node.getValue());
 
-                if (isKeyForVersions(key) || !this.serviceVersions.containsKey(serviceName + "_" + environment + "_" + serviceType)) {
-                    // does not set watch if key is for specific version and we are already watching all versions
-                    watchServiceInstances(key, node.getModifiedIndex() + 1);
+                    String clusterId = node.getValue();
+                    updateServiceInstance(serviceKey, nodePath.getParent() + "url",
+                            service -> (service == null) ? new Etcd2Service(null, null, clusterId, null) :
+                                    service.withClusterId(clusterId));
                 }
-            });
+            }
 
-        } else {
-            log.severe("etcd not initialised.");
-        }
-    }
+            // gatewayUrl changed: added, modified or deleted
+            if (nodePath.isLast("gatewayUrl")) {
+                if (node.getValue() == null && this.gatewayUrls.containsKey(serviceKey)) {
+                    log.info("Gateway URL deleted: " + node.getKey());
+                    // keep the entry, the key is still being watched
+                    this.gatewayUrls.put(serviceKey, Etcd2ServiceInstances.NO_URLS);
+                } else {
+                    log.info("Gateway URL added or modified: " + node.getKey() + " Value: " +
+                            node.getValue());
 
-    private boolean isKeyForVersions(String key) {
-        return key.split("/").length == 5;
-    }
+                    URL gatewayUrl = null;
 
-    private String getServiceKeyVersions(String environment, String serviceName) {
-        return "/environments/" + environment + "/services/" + serviceName;
-    }
+                    try {
+                        gatewayUrl = new URL(node.getValue());
+                    } catch (MalformedURLException e) {
+                        log.severe("Malformed URL exception: " + e.toString());
+                    }
 
-    private String getGatewayKey(String environment, String serviceName, String version) {
-        return "/environments/" + environment + "/services/" + serviceName + "/" + version + "/gatewayUrl";
-    }
+                    this.gatewayUrls.put(serviceKey, (gatewayUrl == null) ?
+                            Etcd2ServiceInstances.NO_URLS : new URL[]{gatewayUrl});
+                }
+            }
 
-    private String getKeyOneLayerUp(String key) {
+            // status has changed: set to disabled
+            if (nodePath.isLast("status") &&
+                    "disabled".equals(node.getValue())) {
+                log.info("Service instance disabled: " + node.getKey());
+                updateServiceInstance(serviceKey, nodePath.getParent() + "url",
+                        service -> null);
+            }
 
-        String[] splittedKey = key.split("/");
+            // node's TTL expired
+            Map<String, Etcd2Service> presentServices = getPresentServices(serviceKey);
+            if (node.getTTL() == 0 && presentServices != null &&
+                    presentServices.containsKey(node.getKey() + "/url")) {
+                log.info("Service instance TTL expired: " + node.getKey());
+                removeServiceInstance(serviceKey, node.getKey() + "/url");
+            }
 
-        StringBuilder newKey = new StringBuilder();
+            // if we are watching all versions, update serviceVersions
+            updateServiceVersions(serviceName, version, environment);
 
-        for (int i = 0; i < splittedKey.length - 1; i++) {
-            newKey.append(splittedKey[i]).append("/");
         }
-        return newKey.toString();
     }
 
-    private String getServiceNameFromKey(String key) {
+    /**
+     * Adds the version to, or removes it from, the watched version lists of every service type, depending on whether
+     * the cache holds instances of that type and version. Called on the watch event worker.
+     */
+    private void updateServiceVersions(String serviceName, String version, String environment) {
+        Etcd2ServiceInstances snapshot = this.serviceInstances.get(ServiceKey.of(serviceName, version, environment,
+                null));
+        boolean changed = false;
+
+        for (ServiceType serviceType : ServiceType.values()) {
+            ServiceKey versionsKey = ServiceKey.of(serviceName, null, environment, serviceType);
+            List<String> versions = this.serviceVersions.get(versionsKey);
+            if (versions == null) {
+                continue;
+            }
 
-        String[] splitted = key.split("/");
+            boolean present = snapshot != null && snapshot.getUrls(serviceType).length > 0;
+            if (versions.contains(version) != present) {
+                List<String> updatedVersions = new LinkedList<>(versions);
+                if (present) {
+                    // instance of new version was added
+                    updatedVersions.add(version);
+                } else {
+                    // version was removed and no other instances of this version exist, remove version
+                    updatedVersions.remove(version);
+                }
+                this.serviceVersions.put(versionsKey, Collections.unmodifiableList(updatedVersions));
+                changed = true;
+            }
+        }
 
-        if (splitted.length < 4) {
-            return null;
-        } else {
-            return splitted[4];
+        if (changed) {
+            versionResolver.invalidate(serviceName, environment);
         }
     }
 
-    private String getVersionFromKey(String key) {
+    private Map<String, Etcd2Service> getPresentServices(ServiceKey serviceKey) {
+        Etcd2ServiceInstances snapshot = this.serviceInstances.get(serviceKey);
+        return (snapshot == null) ? null : snapshot.getInstances();
+    }
 
-        String[] splitted = key.split("/");
+    /**
+     * Atomically replaces the instance snapshot of a service with a copy, in which the instance under the given key is
+     * replaced with the result of the update function. If the function returns null, the instance is removed.
+     *
+     * @param serviceKey  cache key of the service
+     * @param instanceKey key of the instance url node
+     * @param update      function, receiving the current instance (or null) and returning the new instance
+     */
+    private void updateServiceInstance(ServiceKey serviceKey, String instanceKey,
+                                       UnaryOperator<Etcd2Service> update) {
+        Etcd2ServiceInstances updatedSnapshot = this.serviceInstances.compute(serviceKey, (k, snapshot) -> {
+            Map<String, Etcd2Service> instances = (snapshot == null) ? new HashMap<>() :
+                    new HashMap<>(snapshot.getInstances());
+            Etcd2Service updated = update.apply(instances.get(instanceKey));
+            if (updated == null) {
+                instances.remove(instanceKey);
+            } else {
+                instances.put(instanceKey, updated);
+            }
+            return new Etcd2ServiceInstances(instances, this.clusterId);
+        });
+        this.missingServices.invalidate(serviceKey);
+        publishTopology(serviceKey, updatedSnapshot);
+    }
 
-        if (splitted.length < 5) {
-            return null;
-        } else {
-            return splitted[5];
+    /**
+     * Removes an instance from the service snapshot. If the removed instance was the last one, it is saved as the
+     * last known service, which is returned when no other instances are present.
+     */
+    private void removeServiceInstance(ServiceKey serviceKey, String instanceKey) {
+        Etcd2ServiceInstances updatedSnapshot = this.serviceInstances.computeIfPresent(serviceKey, (k, snapshot) -> {
+            Etcd2Service removed = snapshot.getInstances().get(instanceKey);
+            if (removed == null) {
+                return snapshot;
+            }
+            if (snapshot.getInstances().size() == 1) {
+                // if removing last service, save it to separate buffer
+                // this service will be returned, if no other services are present
+                this.lastKnownServices.put(k, new Etcd2ServiceInstances(
+                        Collections.singletonMap("lastKnownService", removed), this.clusterId));
+                this.lastKnownVersions.put(ServiceKey.of(k.getServiceName(), null, k.getEnvironment(), null),
+                        k.getVersion());
+                this.versionResolver.invalidate(k.getServiceName(), k.getEnvironment());
+            }
+            Map<String, Etcd2Service> instances = new HashMap<>(snapshot.getInstances());
+            instances.remove(instanceKey);
+            return new Etcd2ServiceInstances(instances, this.clusterId);
+        });
+        if (updatedSnapshot != null) {
+            publishTopology(serviceKey, updatedSnapshot);
         }
-
     }
 
-    private String getEnvironmentFromKey(String key) {
-
-        String[] splitted = key.split("/");
+    private void publishTopology(ServiceKey serviceKey, Etcd2ServiceInstances snapshot) {
+        this.topologyPublishers.publish(serviceKey.getServiceName(), serviceKey.getVersion(),
+                serviceKey.getEnvironment(), (version, serviceType) -> snapshot.getUrls(serviceType));
+    }
 
-        if (splitted.length < 2) {
-            return null;
-        } else {
-            return splitted[2];
-        }
+    private String getServiceKeyVersions(String environment, String serviceName) {
+        return "/environments/" + environment + "/services/" + serviceName;
+    }
 
+    private String getGatewayKey(String environment, String serviceName, String version) {
+        return "/environments/" + environment + "/services/" + serviceName + "/" + version + "/gatewayUrl";
     }
 
     private void putEtcdKey(String key, String value) {
@@ -24,12 +24,15 @@ import com.kumuluz.ee.discovery.exceptions.EtcdNotAvailableException;
 import com.kumuluz.ee.discovery.utils.Etcd2ServiceConfiguration;
 import com.kumuluz.ee.discovery.utils.Etcd2Utils;
 import mousio.etcd4j.EtcdClient;
+import mousio.etcd4j.promises.EtcdResponsePromise;
 import mousio.etcd4j.responses.EtcdAuthenticationException;
 import mousio.etcd4j.responses.EtcdException;
 import mousio.etcd4j.responses.EtcdKeysResponse;
 
 import java.io.IOException;
 import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 
@@ -99,17 +102,25 @@ public class Etcd2Registrator implements Runnable {
                 try {
                     etcd.putDir(this.serviceConfig.getServiceInstanceKey()).ttl(this.serviceConfig.getTtl())
                             .send().get();
-                    etcd.put(this.serviceConfig.getServiceInstanceKey() + "/type",
-                            this.serviceConfig.getServiceType().toString()).send().get();
-                    etcd.put(this.serviceConfig.getServiceKeyUrl(), this.serviceConfig.getBaseUrl()).send().get();
+
+                    // attributes are written concurrently and the url last, since watchers treat an instance as
+                    // registered once its url is present, they never see an instance without its attributes
+                    List<EtcdResponsePromise<EtcdKeysResponse>> attributeWrites = new ArrayList<>();
+                    attributeWrites.add(etcd.put(this.serviceConfig.getServiceInstanceKey() + "/type",
+                            this.serviceConfig.getServiceType().toString()).send());
                     if (this.serviceConfig.getContainerUrl() != null) {
-                        etcd.put(this.serviceConfig.getServiceInstanceKey() + "/containerUrl",
-                                this.serviceConfig.getContainerUrl()).send().get();
+                        attributeWrites.add(etcd.put(this.serviceConfig.getServiceInstanceKey() + "/containerUrl",
+                                this.serviceConfig.getContainerUrl()).send());
                     }
                     if (this.serviceConfig.getClusterId() != null) {
-                        etcd.put(this.serviceConfig.getServiceInstanceKey() + "/clusterId",
-                                this.serviceConfig.getClusterId()).send().get();
+                        attributeWrites.add(etcd.put(this.serviceConfig.getServiceInstanceKey() + "/clusterId",
+                                this.serviceConfig.getClusterId()).send());
+                    }
+                    for (EtcdResponsePromise<EtcdKeysResponse> attributeWrite : attributeWrites) {
+                        attributeWrite.get();
                     }
+
+                    etcd.put(this.serviceConfig.getServiceKeyUrl(), this.serviceConfig.getBaseUrl()).send().get();
                     this.isRegistered = true;
                 } catch (SocketException | TimeoutException e) {
                     handleTimeoutException(e);
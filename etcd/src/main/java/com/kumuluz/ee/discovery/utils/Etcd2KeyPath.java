@@ -0,0 +1,158 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+/**
+ * Reusable view of an etcd key in the form
+ * <code>/environments/{environment}/services/{serviceName}/{version}/instances/{instanceId}/{attribute}</code>.
+ * The key is parsed in a single pass into segment offsets; segments are only copied when requested, so comparisons
+ * with {@link #isLast(String)} do not allocate. Instances are not thread-safe and are meant to be reused for all nodes
+ * of one response or watch event.
+ *
+ * @since 1.2.0
+ */
+public class Etcd2KeyPath {
+
+    private static final int ENVIRONMENT = 1;
+    private static final int SERVICE_NAME = 3;
+    private static final int VERSION = 4;
+    private static final int INSTANCE_ID = 6;
+    private static final int ATTRIBUTE = 7;
+
+    private static final int MAX_DEPTH = 8;
+
+    private final int[] starts = new int[MAX_DEPTH];
+    private final int[] ends = new int[MAX_DEPTH];
+
+    private String key;
+    private int depth;
+    private int lastStart;
+    private int lastEnd;
+
+    /**
+     * Parses the key. Empty segments are kept, except trailing ones, same as in {@link String#split(String)}.
+     *
+     * @param key etcd key
+     * @return this view
+     */
+    public Etcd2KeyPath parse(String key) {
+        this.key = key;
+        this.depth = 0;
+        this.lastStart = 0;
+        this.lastEnd = 0;
+
+        int length = key.length();
+        while (length > 0 && key.charAt(length - 1) == '/') {
+            length--;
+        }
+
+        int start = (length > 0 && key.charAt(0) == '/') ? 1 : 0;
+        if (start >= length) {
+            return this;
+        }
+
+        for (int i = start; i <= length; i++) {
+            if (i == length || key.charAt(i) == '/') {
+                if (depth < MAX_DEPTH) {
+                    starts[depth] = start;
+                    ends[depth] = i;
+                }
+                depth++;
+                lastStart = start;
+                lastEnd = i;
+                start = i + 1;
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Returns the number of segments.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the segment at the given position or null, if the key is not deep enough.
+     */
+    public String getSegment(int index) {
+        if (index >= depth || index >= MAX_DEPTH) {
+            return null;
+        }
+
+        return key.substring(starts[index], ends[index]);
+    }
+
+    public String getLast() {
+        return key.substring(lastStart, lastEnd);
+    }
+
+    /**
+     * Compares the last segment with the given name, without allocating.
+     */
+    public boolean isLast(String name) {
+        return depth > 0 && lastEnd - lastStart == name.length() &&
+                key.regionMatches(lastStart, name, 0, name.length());
+    }
+
+    /**
+     * Returns the key without the last segment, ending with a slash.
+     */
+    public String getParent() {
+        return key.substring(0, lastStart);
+    }
+
+    public String getEnvironment() {
+        return getSegment(ENVIRONMENT);
+    }
+
+    public String getServiceName() {
+        return getSegment(SERVICE_NAME);
+    }
+
+    public String getVersion() {
+        return getSegment(VERSION);
+    }
+
+    public String getInstanceId() {
+        return getSegment(INSTANCE_ID);
+    }
+
+    public String getAttribute() {
+        return getSegment(ATTRIBUTE);
+    }
+
+    /**
+     * Returns true, if the key is the directory of all versions of a service.
+     */
+    public boolean isVersionsKey() {
+        return depth == SERVICE_NAME + 1;
+    }
+
+    /**
+     * Returns true, if the key is the directory of a service instance.
+     */
+    public boolean isInstanceKey() {
+        return depth == INSTANCE_ID + 1;
+    }
+}
@@ -33,10 +33,10 @@ import java.net.URL;
  */
 public class Etcd2Service {
 
-    private URL baseUrl;
-    private URL containerUrl;
-    private String clusterId;
-    private ServiceType serviceType;
+    private final URL baseUrl;
+    private final URL containerUrl;
+    private final String clusterId;
+    private final ServiceType serviceType;
 
     public Etcd2Service(URL baseUrl, URL containerUrl, String clusterId, ServiceType serviceType) {
         this.baseUrl = baseUrl;
@@ -65,19 +65,19 @@ public class Etcd2Service {
         return serviceType;
     }
 
-    public void setBaseUrl(URL baseUrl) {
-        this.baseUrl = baseUrl;
+    public Etcd2Service withBaseUrl(URL baseUrl) {
+        return new Etcd2Service(baseUrl, this.containerUrl, this.clusterId, this.serviceType);
     }
 
-    public void setContainerUrl(URL containerUrl) {
-        this.containerUrl = containerUrl;
+    public Etcd2Service withContainerUrl(URL containerUrl) {
+        return new Etcd2Service(this.baseUrl, containerUrl, this.clusterId, this.serviceType);
     }
 
-    public void setClusterId(String clusterId) {
-        this.clusterId = clusterId;
+    public Etcd2Service withClusterId(String clusterId) {
+        return new Etcd2Service(this.baseUrl, this.containerUrl, clusterId, this.serviceType);
     }
 
-    public void setServiceType(ServiceType serviceType) {
-        this.serviceType = serviceType;
+    public Etcd2Service withServiceType(ServiceType serviceType) {
+        return new Etcd2Service(this.baseUrl, this.containerUrl, this.clusterId, serviceType);
     }
 }
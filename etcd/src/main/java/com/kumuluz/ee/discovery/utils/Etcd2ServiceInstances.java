@@ -0,0 +1,84 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import com.kumuluz.ee.discovery.enums.ServiceType;
+
+import java.net.URL;
+import java.util.*;
+
+/**
+ * Immutable snapshot of service instances of a single service version. Instance URLs are precomputed for every
+ * service type when the snapshot is built, so picking an instance does not require filtering the instances.
+ *
+ * @since 1.2.0
+ */
+public class Etcd2ServiceInstances {
+
+    public static final URL[] NO_URLS = new URL[0];
+
+    private final Map<String, Etcd2Service> instances;
+    private final Map<ServiceType, URL[]> urls;
+
+    /**
+     * Creates the snapshot.
+     *
+     * @param instances service instances, keyed by their url key
+     * @param clusterId cluster id of this instance; instances in the same cluster are accessed by their container
+     *                  URL
+     */
+    public Etcd2ServiceInstances(Map<String, Etcd2Service> instances, String clusterId) {
+        this.instances = Collections.unmodifiableMap(instances);
+        this.urls = new EnumMap<>(ServiceType.class);
+
+        for (ServiceType serviceType : ServiceType.values()) {
+            List<URL> typeUrls = new ArrayList<>(instances.size());
+            for (Etcd2Service service : instances.values()) {
+                if (service.getServiceType() == serviceType && service.getBaseUrl() != null) {
+                    if (clusterId != null && clusterId.equals(service.getClusterId())) {
+                        typeUrls.add(service.getContainerUrl());
+                    } else {
+                        typeUrls.add(service.getBaseUrl());
+                    }
+                }
+            }
+            this.urls.put(serviceType, typeUrls.isEmpty() ? NO_URLS : typeUrls.toArray(new URL[0]));
+        }
+    }
+
+    public Map<String, Etcd2Service> getInstances() {
+        return instances;
+    }
+
+    /**
+     * Returns instance URLs of the given type. The returned array is shared and must not be modified.
+     *
+     * @param serviceType service type
+     * @return instance URLs
+     */
+    public URL[] getUrls(ServiceType serviceType) {
+        return urls.get(serviceType);
+    }
+
+    public boolean isEmpty() {
+        return instances.isEmpty();
+    }
+}
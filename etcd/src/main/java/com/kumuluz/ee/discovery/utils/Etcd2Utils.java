@@ -25,11 +25,13 @@ import mousio.client.retry.RetryPolicy;
 import mousio.etcd4j.EtcdClient;
 import mousio.etcd4j.requests.EtcdKeyGetRequest;
 import mousio.etcd4j.responses.EtcdAuthenticationException;
+import mousio.etcd4j.responses.EtcdErrorCode;
 import mousio.etcd4j.responses.EtcdException;
 import mousio.etcd4j.responses.EtcdKeysResponse;
 
 import java.io.IOException;
 import java.net.SocketException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 
@@ -84,9 +86,85 @@ public class Etcd2Utils {
         return getEtcdDir(etcd, key, null, resilience);
     }
 
+    /**
+     * Reads the directory without blocking. The returned future is completed on the etcd client event loop with the
+     * response or with null, if the directory could not be read. If resilience is disabled, the future is completed
+     * exceptionally with {@link EtcdNotAvailableException} on timeouts.
+     */
+    public static CompletableFuture<EtcdKeysResponse> getEtcdDirAsync(EtcdClient etcd, String key,
+                                                                      RetryPolicy retryPolicy, boolean resilience) {
+        if (etcd == null) {
+            log.severe("etcd not initialised.");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return sendAsync(etcd.getDir(key).recursive(), retryPolicy, resilience);
+    }
+
+    /**
+     * Reads the key without blocking. A missing key completes the returned future with null, without logging.
+     *
+     * @see #getEtcdDirAsync(EtcdClient, String, RetryPolicy, boolean)
+     */
+    public static CompletableFuture<EtcdKeysResponse> getEtcdKeyAsync(EtcdClient etcd, String key,
+                                                                      RetryPolicy retryPolicy, boolean resilience) {
+        if (etcd == null) {
+            log.severe("etcd not initialised.");
+            return CompletableFuture.completedFuture(null);
+        }
+
+        return sendAsync(etcd.get(key), retryPolicy, resilience);
+    }
+
+    private static CompletableFuture<EtcdKeysResponse> sendAsync(EtcdKeyGetRequest request, RetryPolicy retryPolicy,
+                                                                 boolean resilience) {
+        CompletableFuture<EtcdKeysResponse> future = new CompletableFuture<>();
+
+        if (retryPolicy != null) {
+            request.setRetryPolicy(retryPolicy);
+        }
+
+        try {
+            request.send().addListener(promise -> {
+                Throwable e = promise.getException();
+                if (e == null) {
+                    future.complete(promise.getNow());
+                } else if (e instanceof SocketException || e instanceof TimeoutException) {
+                    String message = "Timeout exception. Cannot read given key in specified time or retry-count " +
+                            "constraints.";
+                    if (resilience) {
+                        log.warning(message + " Error: " + e);
+                        future.complete(null);
+                    } else {
+                        future.completeExceptionally(new EtcdNotAvailableException(message, e));
+                    }
+                } else {
+                    if (e instanceof EtcdException) {
+                        if (!((EtcdException) e).isErrorCode(EtcdErrorCode.KeyNotFound)) {
+                            log.info("Etcd exception. " + e);
+                        }
+                    } else if (e instanceof EtcdAuthenticationException) {
+                        log.severe("Etcd authentication exception. Cannot read given key: " + e);
+                    } else {
+                        log.info("IO Exception. Cannot read given key: " + e);
+                    }
+                    future.complete(null);
+                }
+            });
+        } catch (IOException e) {
+            log.info("IO Exception. Cannot read given key: " + e);
+            future.complete(null);
+        }
+
+        return future;
+    }
+
     public static String getLastKeyLayer(String key) {
-        String[] splittedKey = key.split("/");
-        return splittedKey[splittedKey.length - 1];
+        int end = key.length();
+        while (end > 0 && key.charAt(end - 1) == '/') {
+            end--;
+        }
+        return key.substring(key.lastIndexOf('/', end - 1) + 1, end);
     }
 
     public static String getServiceKeyInstance(String environment, String serviceName, String serviceVersion, String
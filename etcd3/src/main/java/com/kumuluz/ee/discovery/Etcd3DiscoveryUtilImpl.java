@@ -0,0 +1,641 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.discovery.enums.AccessType;
+import com.kumuluz.ee.discovery.enums.ServiceType;
+import com.kumuluz.ee.discovery.exceptions.Etcd3NotAvailableException;
+import com.kumuluz.ee.discovery.loadbalancing.LoadBalancer;
+import com.kumuluz.ee.discovery.loadbalancing.LoadBalancers;
+import com.kumuluz.ee.discovery.topology.Flow;
+import com.kumuluz.ee.discovery.topology.TopologyEvent;
+import com.kumuluz.ee.discovery.topology.TopologyPublishers;
+import com.kumuluz.ee.discovery.utils.*;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.ClientBuilder;
+import io.etcd.jetcd.KV;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.Watch;
+import io.etcd.jetcd.common.exception.CompactedException;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.PutOption;
+import io.etcd.jetcd.options.WatchOption;
+import io.etcd.jetcd.watch.WatchEvent;
+import io.etcd.jetcd.watch.WatchResponse;
+import io.grpc.netty.GrpcSslContexts;
+import io.netty.handler.ssl.SslContext;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.net.ssl.SSLException;
+import java.io.ByteArrayInputStream;
+import java.net.*;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.logging.Logger;
+
+/**
+ * Implementation of a DiscoveryUtil interface, which uses the etcd v3 API.
+ * <p>
+ * All keys of a discovered service are read with a single prefix request and kept up to date with a prefix watch,
+ * which resumes from the last seen revision. Watches of all services share the gRPC stream of the client.
+ *
+ * @since 1.2.0
+ */
+@ApplicationScoped
+public class Etcd3DiscoveryUtilImpl implements DiscoveryUtil {
+
+    private static final Logger log = Logger.getLogger(Etcd3DiscoveryUtilImpl.class.getName());
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private final ConfigurationUtil configurationUtil = ConfigurationUtil.getInstance();
+
+    private List<Etcd3Registrator> registrators;
+    private Map<String, ScheduledFuture> registratorHandles;
+
+    // state of discovered services, keyed by service name and environment
+    private ConcurrentMap<ServiceKey, Etcd3ServiceState> services;
+    private ConcurrentMap<ServiceKey, Watch.Watcher> watchers;
+
+    private VersionResolver versionResolver;
+    private TopologyPublishers topologyPublishers;
+
+    // concurrent cold lookups of the same service share a single etcd request
+    private SingleFlight<ServiceKey, Etcd3ServiceState> serviceLookups;
+
+    // services, which were recently not found in etcd
+    private NegativeLookupCache<ServiceKey> missingServices;
+
+    private Client etcd;
+
+    private String clusterId;
+
+    private boolean resilience;
+    private long requestTimeout;
+    private int watchRetryDelay;
+
+    @PostConstruct
+    public void init() {
+
+        this.registrators = new LinkedList<>();
+        this.registratorHandles = new HashMap<>();
+
+        this.services = new ConcurrentHashMap<>();
+        this.watchers = new ConcurrentHashMap<>();
+
+        this.versionResolver = new VersionResolver(this);
+        this.topologyPublishers = new TopologyPublishers();
+
+        this.serviceLookups = new SingleFlight<>();
+        this.missingServices = NegativeLookupCache.fromConfiguration();
+
+        // get user credentials
+        String etcdUsername = configurationUtil.get("kumuluzee.discovery.etcd.username").orElse(null);
+        String etcdPassword = configurationUtil.get("kumuluzee.discovery.etcd.password").orElse(null);
+
+        // get CA certificate
+        String cert = configurationUtil.get("kumuluzee.discovery.etcd.ca").orElse(null);
+        SslContext sslContext = null;
+        if (cert != null) {
+
+            cert = cert.replaceAll("\\s+", "").replace("-----BEGINCERTIFICATE-----", "")
+                    .replace("-----ENDCERTIFICATE-----", "");
+
+            byte[] decoded = Base64.getDecoder().decode(cert);
+
+            try {
+                X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509")
+                        .generateCertificate(new ByteArrayInputStream(decoded));
+
+                sslContext = GrpcSslContexts.forClient().trustManager(certificate).build();
+
+            } catch (CertificateException e) {
+                log.severe("Certificate exception: " + e.toString());
+            } catch (SSLException e) {
+                log.severe("SSL exception: " + e.toString());
+            }
+        }
+
+        // get etcd host names
+        String etcdUrls = configurationUtil.get("kumuluzee.discovery.etcd.hosts").orElse(null);
+        if (etcdUrls != null && !etcdUrls.isEmpty()) {
+
+            String[] etcdHosts = etcdUrls.split(",");
+
+            if (etcdHosts.length % 2 == 0) {
+                log.warning("Using an odd number of etcd hosts is recommended. See etcd documentation.");
+            }
+
+            ClientBuilder clientBuilder = Client.builder().endpoints(etcdHosts);
+            if (etcdUsername != null && !etcdUsername.isEmpty() && etcdPassword != null && !etcdPassword.isEmpty()) {
+                clientBuilder.user(Etcd3Utils.toByteSequence(etcdUsername))
+                        .password(Etcd3Utils.toByteSequence(etcdPassword));
+            }
+            if (sslContext != null) {
+                clientBuilder.sslContext(sslContext);
+            }
+
+            etcd = clientBuilder.build();
+
+        } else {
+            log.severe("No etcd server hosts provided. Specify hosts with configuration key" +
+                    "kumuluzee.discovery.etcd.hosts in format " +
+                    "http://192.168.99.100:2379,http://192.168.99.101:2379,http://192.168.99.102:2379");
+        }
+
+        this.resilience = configurationUtil.getBoolean("kumuluzee.discovery.resilience").orElse(true);
+        this.requestTimeout = configurationUtil.getInteger("kumuluzee.discovery.etcd.request-timeout-ms")
+                .orElse(5000);
+        this.watchRetryDelay = InitializationUtils.getStartRetryDelayMs(configurationUtil, "etcd");
+
+        this.clusterId = configurationUtil.get("kumuluzee.discovery.cluster").orElse(null);
+    }
+
+    @Override
+    public void register(String serviceName, String version, String environment, long ttl,
+                         long pingInterval, boolean singleton, String baseUrl, String serviceId, ServiceType serviceType) {
+
+        if (serviceType == null) {
+            serviceType = ServiceType.REST;
+        }
+
+        ServiceUrls serviceUrls = ServiceUrls.detect(baseUrl, this.clusterId, serviceType).orElse(null);
+        if (serviceUrls == null) {
+            return;
+        }
+
+        Etcd3ServiceConfiguration serviceConfiguration = new Etcd3ServiceConfiguration(serviceName, version,
+                environment, (int) ttl, singleton, serviceUrls.getBaseUrl(), serviceUrls.getContainerUrl(),
+                this.clusterId, serviceId, serviceType);
+
+        Etcd3Registrator registrator = new Etcd3Registrator(etcd, serviceConfiguration, resilience, requestTimeout);
+        this.registrators.add(registrator);
+
+        // the lease is kept alive by the client, the registrator only re-registers the instance if the lease is lost
+        ScheduledFuture handle = scheduler.scheduleWithFixedDelay(registrator, 0, pingInterval, TimeUnit.SECONDS);
+        this.registratorHandles.put(serviceId, handle);
+    }
+
+    @Override
+    public void register(String serviceName, String version, String environment, long ttl, long pingInterval, boolean
+            singleton, ServiceType serviceType) {
+
+        register(serviceName, version, environment, ttl, pingInterval, singleton, null, null, serviceType);
+
+    }
+
+    @Override
+    public void deregister() {
+        for (ScheduledFuture handle : this.registratorHandles.values()) {
+            handle.cancel(true);
+        }
+
+        if (etcd != null) {
+            for (Etcd3Registrator registrator : this.registrators) {
+                log.info("Deregistering service with etcd. Service name: " +
+                        registrator.getServiceConfig().getServiceName() + " Service ID: " +
+                        registrator.getServiceConfig().getServiceInstanceKey());
+
+                registrator.deregister();
+            }
+
+            for (Watch.Watcher watcher : this.watchers.values()) {
+                watcher.close();
+            }
+            this.watchers.clear();
+
+            log.info("Closing etcd connection for Discovery extension.");
+            etcd.close();
+            etcd = null;
+        }
+    }
+
+    @Override
+    public void deregister(String serviceId) {
+
+        log.info("Deregistering service with etcd. Service id: " + serviceId);
+
+        ScheduledFuture handle = this.registratorHandles.remove(serviceId);
+        if (handle != null) {
+            handle.cancel(true);
+        }
+
+        if (etcd != null) {
+            for (Etcd3Registrator registrator : this.registrators) {
+                if (registrator.getServiceConfig().getServiceInstanceKey().endsWith(serviceId)) {
+                    registrator.deregister();
+                }
+            }
+        }
+    }
+
+    @Override
+    public Optional<List<URL>> getServiceInstances(String serviceName, String version,
+                                                   String environment, AccessType accessType, ServiceType serviceType) {
+
+        return Optional.of(Collections.unmodifiableList(Arrays.asList(getServiceInstanceUrls(serviceName, version,
+                environment, accessType, serviceType))));
+    }
+
+    /**
+     * Returns precomputed instance URLs of a service. The returned array is shared and must not be modified.
+     */
+    private URL[] getServiceInstanceUrls(String serviceName, String version, String environment,
+                                         AccessType accessType, ServiceType serviceType) {
+
+        version = versionResolver.resolve(serviceName, version, environment, serviceType);
+
+        Etcd3ServiceState state = getServiceState(serviceName, environment);
+        if (state == null) {
+            return Etcd3ServiceInstances.NO_URLS;
+        }
+
+        return getKnownServiceInstanceUrls(state, version, accessType, serviceType);
+    }
+
+    /**
+     * Returns cached instance URLs of a service version, falling back to the last known instances.
+     */
+    private URL[] getKnownServiceInstanceUrls(Etcd3ServiceState state, String version, AccessType accessType,
+                                              ServiceType serviceType) {
+
+        Etcd3ServiceInstances presentServices = state.getInstances(version);
+        if (presentServices == null) {
+            presentServices = state.getLastKnownInstances(version);
+            if (presentServices != null) {
+                // if no services are present, use the last known service
+                log.warning("No instances of " + state.getPrefix() + version + " found, using last known service.");
+            }
+        }
+
+        if (presentServices != null && !presentServices.isEmpty()) {
+            URL[] gatewayUrl = state.getGatewayUrl(version);
+            if (accessType == AccessType.GATEWAY && gatewayUrl.length > 0) {
+                return gatewayUrl;
+            } else {
+                return presentServices.getUrls(serviceType);
+            }
+        }
+
+        return Etcd3ServiceInstances.NO_URLS;
+    }
+
+    /**
+     * Returns the cached state of the service, reading it from etcd, if it is not cached.
+     *
+     * @return state of the service or null, if the service is not registered or etcd is not available
+     */
+    private Etcd3ServiceState getServiceState(String serviceName, String environment) {
+        ServiceKey serviceKey = ServiceKey.of(serviceName, null, environment, null);
+
+        Etcd3ServiceState state = this.services.get(serviceKey);
+        if (state != null || this.missingServices.isMissing(serviceKey)) {
+            return state;
+        }
+
+        try {
+            return loadServiceStateAsync(serviceKey).get(requestTimeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            handleUnavailable(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            handleUnavailable(e.getCause());
+        }
+
+        return this.services.get(serviceKey);
+    }
+
+    /**
+     * Reads all keys of the service with a single prefix request and starts watching them.
+     */
+    private CompletableFuture<Etcd3ServiceState> loadServiceStateAsync(ServiceKey serviceKey) {
+        Etcd3ServiceState state = this.services.get(serviceKey);
+        if (state != null || etcd == null || this.missingServices.isMissing(serviceKey)) {
+            return CompletableFuture.completedFuture(state);
+        }
+
+        return serviceLookups.executeAsync(serviceKey, () -> {
+            Etcd3ServiceState presentState = this.services.get(serviceKey);
+            if (presentState != null) {
+                return CompletableFuture.completedFuture(presentState);
+            }
+
+            String prefix = Etcd3Utils.getServicePrefix(serviceKey.getEnvironment(), serviceKey.getServiceName());
+            return getPrefix(prefix).thenApply(response -> publishServiceState(serviceKey, prefix, response));
+        });
+    }
+
+    private Etcd3ServiceState publishServiceState(ServiceKey serviceKey, String prefix, GetResponse response) {
+        if (response.getKvs().isEmpty()) {
+            this.missingServices.put(serviceKey);
+            return null;
+        }
+
+        Etcd3ServiceState state = new Etcd3ServiceState(prefix, this.clusterId);
+        for (KeyValue keyValue : response.getKvs()) {
+            state.apply(Etcd3Utils.toString(keyValue.getKey()), Etcd3Utils.toString(keyValue.getValue()));
+        }
+        state.rebuild(state.getVersions());
+        state.setRevision(response.getHeader().getRevision());
+
+        Etcd3ServiceState presentState = this.services.putIfAbsent(serviceKey, state);
+        if (presentState != null) {
+            return presentState;
+        }
+
+        this.missingServices.invalidate(serviceKey);
+        versionResolver.invalidate(serviceKey.getServiceName(), serviceKey.getEnvironment());
+        publishTopology(serviceKey, state, null);
+        watchService(serviceKey, state);
+
+        return state;
+    }
+
+    @Override
+    public Optional<URL> getServiceInstance(String serviceName, String version, String
+            environment, AccessType accessType, ServiceType serviceType) {
+
+        return getServiceInstance(serviceName, version, environment, accessType, serviceType,
+                LoadBalancers.getDefault());
+    }
+
+    @Override
+    public Optional<URL> getServiceInstance(String serviceName, String version, String environment,
+                                            AccessType accessType, ServiceType serviceType,
+                                            LoadBalancer loadBalancer) {
+
+        return loadBalancer.pick(ServiceKey.of(serviceName, version, environment, serviceType),
+                getServiceInstanceUrls(serviceName, version, environment, accessType, serviceType));
+    }
+
+    @Override
+    public CompletionStage<Optional<URL>> getServiceInstanceAsync(String serviceName, String version,
+                                                                  String environment, AccessType accessType,
+                                                                  ServiceType serviceType,
+                                                                  LoadBalancer loadBalancer) {
+
+        ServiceKey serviceKey = ServiceKey.of(serviceName, null, environment, null);
+
+        return loadServiceStateAsync(serviceKey)
+                .handle((state, t) -> {
+                    if (t != null) {
+                        handleUnavailable(t);
+                    }
+                    return this.services.get(serviceKey);
+                })
+                .thenApply(state -> {
+                    if (state == null) {
+                        return Optional.empty();
+                    }
+
+                    // versions of the service are already cached, so the version is resolved without blocking
+                    String resolvedVersion = versionResolver.resolve(serviceName, version, environment,
+                            serviceType);
+
+                    return loadBalancer.pick(ServiceKey.of(serviceName, version, environment, serviceType),
+                            getKnownServiceInstanceUrls(state, resolvedVersion, accessType, serviceType));
+                });
+    }
+
+    @Override
+    public Flow.Publisher<TopologyEvent> getServiceTopology(String serviceName, String version, String environment,
+                                                            ServiceType serviceType) {
+
+        String resolvedVersion = versionResolver.resolve(serviceName, version, environment, serviceType);
+
+        return this.topologyPublishers.getPublisher(ServiceKey.of(serviceName, resolvedVersion, environment,
+                serviceType), () -> getServiceInstanceUrls(serviceName, resolvedVersion, environment,
+                AccessType.DIRECT, serviceType));
+    }
+
+    @Override
+    public Optional<URL> getServiceInstance(String serviceName, String version, String environment) {
+
+        return getServiceInstance(serviceName, version, environment, AccessType.DIRECT, ServiceType.REST);
+
+    }
+
+    @Override
+    public Optional<List<String>> getServiceVersions(String serviceName, String environment, ServiceType serviceType) {
+
+        Etcd3ServiceState state = getServiceState(serviceName, environment);
+        if (state == null) {
+            return Optional.of(Collections.emptyList());
+        }
+
+        List<String> presentVersions = state.getVersions(serviceType);
+        if (presentVersions.isEmpty()) {
+            // we check last known version if there are no present versions left
+            String lastKnownVersion = state.getLastKnownVersion();
+            if (lastKnownVersion != null) {
+                presentVersions = Collections.singletonList(lastKnownVersion);
+            }
+        }
+
+        return Optional.of(Collections.unmodifiableList(presentVersions));
+    }
+
+    @Override
+    public void disableServiceInstance(String serviceName, String version, String
+            environment, URL url, ServiceType serviceType) {
+
+        if (etcd == null) {
+            log.severe("etcd not initialised.");
+            return;
+        }
+
+        String prefix = Etcd3Utils.getServiceInstancesPrefix(environment, serviceName, version);
+
+        try {
+            GetResponse response = getPrefix(prefix).get(requestTimeout, TimeUnit.MILLISECONDS);
+
+            KV kv = etcd.getKVClient();
+            for (KeyValue keyValue : response.getKvs()) {
+                String key = Etcd3Utils.toString(keyValue.getKey());
+                if (key.endsWith("/url") && url.toString().equals(Etcd3Utils.toString(keyValue.getValue()))) {
+                    String instanceKey = key.substring(0, key.length() - "/url".length());
+                    log.info("Disabling service instance: " + instanceKey);
+
+                    // attach the status to the lease of the instance, so that it is removed together with it
+                    kv.put(Etcd3Utils.toByteSequence(instanceKey + "/status"), Etcd3Utils.toByteSequence("disabled"),
+                            PutOption.newBuilder().withLeaseId(keyValue.getLease()).build())
+                            .get(requestTimeout, TimeUnit.MILLISECONDS);
+                }
+            }
+        } catch (TimeoutException e) {
+            handleUnavailable(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            handleUnavailable(e.getCause());
+        }
+    }
+
+    /**
+     * Watches all keys of the service, starting after the revision of the state. Replaces the previous watch of the
+     * service, if any.
+     */
+    private void watchService(ServiceKey serviceKey, Etcd3ServiceState state) {
+
+        if (etcd == null) {
+            log.severe("etcd not initialised.");
+            return;
+        }
+
+        log.info("Initialising watch for prefix: " + state.getPrefix());
+
+        ByteSequence prefix = Etcd3Utils.toByteSequence(state.getPrefix());
+        WatchOption watchOption = WatchOption.newBuilder().withPrefix(prefix)
+                .withRevision(state.getRevision() + 1).build();
+
+        Watch.Watcher watcher = etcd.getWatchClient().watch(prefix, watchOption, Watch.listener(
+                response -> handleWatchResponse(serviceKey, state, response),
+                throwable -> handleWatchError(serviceKey, state, throwable)));
+
+        Watch.Watcher previousWatcher = this.watchers.put(serviceKey, watcher);
+        if (previousWatcher != null) {
+            previousWatcher.close();
+        }
+    }
+
+    private void handleWatchResponse(ServiceKey serviceKey, Etcd3ServiceState state, WatchResponse response) {
+        Set<String> versions = new HashSet<>();
+        boolean versionsChanged;
+
+        synchronized (state) {
+            for (WatchEvent event : response.getEvents()) {
+                KeyValue keyValue = event.getKeyValue();
+
+                String value;
+                if (event.getEventType() == WatchEvent.EventType.PUT) {
+                    value = Etcd3Utils.toString(keyValue.getValue());
+                } else if (event.getEventType() == WatchEvent.EventType.DELETE) {
+                    value = null;
+                } else {
+                    continue;
+                }
+
+                String version = state.apply(Etcd3Utils.toString(keyValue.getKey()), value);
+                if (version != null) {
+                    versions.add(version);
+                }
+                state.setRevision(Math.max(state.getRevision(), keyValue.getModRevision()));
+            }
+
+            versionsChanged = state.rebuild(versions);
+        }
+
+        if (versionsChanged) {
+            versionResolver.invalidate(serviceKey.getServiceName(), serviceKey.getEnvironment());
+        }
+        for (String version : versions) {
+            publishTopology(serviceKey, state, version);
+        }
+    }
+
+    private void handleWatchError(ServiceKey serviceKey, Etcd3ServiceState state, Throwable throwable) {
+        if (etcd == null) {
+            // client closed
+            return;
+        }
+
+        if (throwable instanceof CompactedException) {
+            // revision too old, read the service again
+            log.warning("Watch revision of " + state.getPrefix() + " was compacted. Reloading service.");
+            reloadServiceState(serviceKey, state);
+        } else {
+            log.warning("Watch of " + state.getPrefix() + " failed, retrying in " + watchRetryDelay + " ms. Error: " +
+                    throwable);
+            scheduler.schedule(() -> watchService(serviceKey, state), watchRetryDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Replaces all values of the state with the current keys of the service and starts watching from their revision.
+     */
+    private void reloadServiceState(ServiceKey serviceKey, Etcd3ServiceState state) {
+        if (etcd == null) {
+            return;
+        }
+
+        getPrefix(state.getPrefix()).whenComplete((response, t) -> {
+            if (t != null) {
+                log.warning("Cannot reload " + state.getPrefix() + ", retrying in " + watchRetryDelay + " ms. Error: " +
+                        t);
+                scheduler.schedule(() -> reloadServiceState(serviceKey, state), watchRetryDelay,
+                        TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            Set<String> versions;
+            boolean versionsChanged;
+            synchronized (state) {
+                versions = state.clear();
+                for (KeyValue keyValue : response.getKvs()) {
+                    String version = state.apply(Etcd3Utils.toString(keyValue.getKey()),
+                            Etcd3Utils.toString(keyValue.getValue()));
+                    if (version != null) {
+                        versions.add(version);
+                    }
+                }
+                versionsChanged = state.rebuild(versions);
+                state.setRevision(response.getHeader().getRevision());
+            }
+
+            if (versionsChanged) {
+                versionResolver.invalidate(serviceKey.getServiceName(), serviceKey.getEnvironment());
+            }
+            publishTopology(serviceKey, state, null);
+            watchService(serviceKey, state);
+        });
+    }
+
+    private CompletableFuture<GetResponse> getPrefix(String prefix) {
+        ByteSequence key = Etcd3Utils.toByteSequence(prefix);
+        return etcd.getKVClient().get(key, GetOption.newBuilder().withPrefix(key).build());
+    }
+
+    /**
+     * Publishes instances of the version, or of all versions if version is null, to topology subscribers.
+     */
+    private void publishTopology(ServiceKey serviceKey, Etcd3ServiceState state, String version) {
+        this.topologyPublishers.publish(serviceKey.getServiceName(), version, serviceKey.getEnvironment(),
+                (subscribedVersion, serviceType) -> {
+                    Etcd3ServiceInstances instances = state.getInstances(subscribedVersion);
+                    return (instances == null) ? Etcd3ServiceInstances.NO_URLS : instances.getUrls(serviceType);
+                });
+    }
+
+    private void handleUnavailable(Throwable e) {
+        String message = "Cannot read service from etcd in specified time.";
+        if (resilience) {
+            log.warning(message + " Error: " + e);
+        } else {
+            throw new Etcd3NotAvailableException(message, e);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery;
+
+import com.kumuluz.ee.discovery.exceptions.Etcd3NotAvailableException;
+import com.kumuluz.ee.discovery.utils.Etcd3ServiceConfiguration;
+import com.kumuluz.ee.discovery.utils.Etcd3ServiceInstances;
+import com.kumuluz.ee.discovery.utils.Etcd3ServiceState;
+import com.kumuluz.ee.discovery.utils.Etcd3Utils;
+import io.etcd.jetcd.ByteSequence;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.kv.GetResponse;
+import io.etcd.jetcd.lease.LeaseKeepAliveResponse;
+import io.etcd.jetcd.op.Op;
+import io.etcd.jetcd.options.GetOption;
+import io.etcd.jetcd.options.PutOption;
+import io.etcd.jetcd.support.CloseableClient;
+import io.grpc.stub.StreamObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+
+/**
+ * Runnable for service registration. The instance keys are attached to a lease, which is kept alive over the shared
+ * keep-alive stream of the client, so no heartbeat requests are sent. If the lease is lost, the instance is registered
+ * again on the next run.
+ *
+ * @since 1.2.0
+ */
+public class Etcd3Registrator implements Runnable {
+    private static final Logger log = Logger.getLogger(Etcd3Registrator.class.getName());
+
+    private Client etcd;
+    private Etcd3ServiceConfiguration serviceConfig;
+    private boolean resilience;
+    private long requestTimeout;
+
+    // 0, if the instance is not registered
+    private volatile long leaseId;
+    private CloseableClient keepAlive;
+
+    public Etcd3Registrator(Client etcd, Etcd3ServiceConfiguration serviceConfig, boolean resilience,
+                            long requestTimeout) {
+        this.etcd = etcd;
+        this.serviceConfig = serviceConfig;
+        this.resilience = resilience;
+        this.requestTimeout = requestTimeout;
+    }
+
+    public void run() {
+        if (this.leaseId == 0) {
+            this.registerToEtcd();
+        }
+    }
+
+    private synchronized void registerToEtcd() {
+        if (this.leaseId != 0) {
+            return;
+        }
+
+        if (this.serviceConfig.isSingleton() && isRegistered()) {
+
+            log.warning("Instance was not registered. Trying to register a singleton microservice instance, but " +
+                    "another instance is already registered.");
+
+            return;
+        }
+
+        log.info("Registering service with etcd. Service ID: " + this.serviceConfig.getServiceInstanceKey());
+
+        long grantedLeaseId = 0;
+        try {
+            grantedLeaseId = etcd.getLeaseClient().grant(this.serviceConfig.getTtl())
+                    .get(requestTimeout, TimeUnit.MILLISECONDS).getID();
+
+            // all keys are written in one transaction, so watchers receive them in a single revision and never
+            // see an instance without its type
+            PutOption putOption = PutOption.newBuilder().withLeaseId(grantedLeaseId).build();
+            String instanceKey = this.serviceConfig.getServiceInstanceKey();
+
+            List<Op> puts = new ArrayList<>();
+            puts.add(Op.put(key(instanceKey + "/type"), value(this.serviceConfig.getServiceType().toString()),
+                    putOption));
+            puts.add(Op.put(key(instanceKey + "/url"), value(this.serviceConfig.getBaseUrl()), putOption));
+            if (this.serviceConfig.getContainerUrl() != null) {
+                puts.add(Op.put(key(instanceKey + "/containerUrl"), value(this.serviceConfig.getContainerUrl()),
+                        putOption));
+            }
+            if (this.serviceConfig.getClusterId() != null) {
+                puts.add(Op.put(key(instanceKey + "/clusterId"), value(this.serviceConfig.getClusterId()),
+                        putOption));
+            }
+            etcd.getKVClient().txn().Then(puts.toArray(new Op[0])).commit()
+                    .get(requestTimeout, TimeUnit.MILLISECONDS);
+
+            this.keepAlive = etcd.getLeaseClient().keepAlive(grantedLeaseId, new LeaseObserver(grantedLeaseId));
+            this.leaseId = grantedLeaseId;
+        } catch (TimeoutException e) {
+            revoke(grantedLeaseId);
+            handleTimeoutException(e);
+        } catch (InterruptedException e) {
+            revoke(grantedLeaseId);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            revoke(grantedLeaseId);
+            log.severe("Cannot register service. Error: " + e.getCause());
+        }
+    }
+
+    /**
+     * Revokes the lease, which deletes all keys of the instance.
+     */
+    public synchronized void deregister() {
+        if (this.keepAlive != null) {
+            this.keepAlive.close();
+            this.keepAlive = null;
+        }
+
+        long registeredLeaseId = this.leaseId;
+        this.leaseId = 0;
+        if (registeredLeaseId != 0) {
+            try {
+                etcd.getLeaseClient().revoke(registeredLeaseId).get(requestTimeout, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException | ExecutionException e) {
+                log.severe("Cannot deregister service. Error: " + e.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public Etcd3ServiceConfiguration getServiceConfig() {
+        return serviceConfig;
+    }
+
+    private synchronized void onLeaseLost(long lostLeaseId) {
+        if (this.leaseId != lostLeaseId) {
+            return;
+        }
+
+        log.warning("Lease of " + this.serviceConfig.getServiceInstanceKey() + " lost. Reregistering service.");
+
+        if (this.keepAlive != null) {
+            this.keepAlive.close();
+            this.keepAlive = null;
+        }
+        this.leaseId = 0;
+    }
+
+    private void revoke(long grantedLeaseId) {
+        if (grantedLeaseId != 0) {
+            etcd.getLeaseClient().revoke(grantedLeaseId);
+        }
+    }
+
+    private boolean isRegistered() {
+        String servicePrefix = Etcd3Utils.getServicePrefix(this.serviceConfig.getEnvironment(),
+                this.serviceConfig.getServiceName());
+        String instancesPrefix = Etcd3Utils.getServiceInstancesPrefix(this.serviceConfig.getEnvironment(),
+                this.serviceConfig.getServiceName(), this.serviceConfig.getServiceVersion());
+
+        try {
+            GetResponse response = etcd.getKVClient().get(key(instancesPrefix),
+                    GetOption.newBuilder().withPrefix(key(instancesPrefix)).build())
+                    .get(requestTimeout, TimeUnit.MILLISECONDS);
+
+            Etcd3ServiceState state = new Etcd3ServiceState(servicePrefix, null);
+            for (KeyValue keyValue : response.getKvs()) {
+                state.apply(Etcd3Utils.toString(keyValue.getKey()), Etcd3Utils.toString(keyValue.getValue()));
+            }
+            state.rebuild(state.getVersions());
+
+            Etcd3ServiceInstances instances = state.getInstances(this.serviceConfig.getServiceVersion());
+            return instances != null && !instances.isEmpty();
+        } catch (TimeoutException e) {
+            handleTimeoutException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.severe("Cannot read registered instances. Error: " + e.getCause());
+        }
+
+        return false;
+    }
+
+    private void handleTimeoutException(Throwable e) {
+        String message = "Timeout exception. Cannot read given key in specified time or retry-count " +
+                "constraints.";
+        if (resilience) {
+            log.warning(message + " Error: " + e);
+        } else {
+            RuntimeException ex = new Etcd3NotAvailableException(message, e);
+            // log the exception, because exceptions in scheduler are not reported
+            log.severe(ex.toString());
+            throw ex; // stops the scheduler
+        }
+    }
+
+    private static ByteSequence key(String key) {
+        return Etcd3Utils.toByteSequence(key);
+    }
+
+    private static ByteSequence value(String value) {
+        return Etcd3Utils.toByteSequence(value);
+    }
+
+    private class LeaseObserver implements StreamObserver<LeaseKeepAliveResponse> {
+
+        private final long observedLeaseId;
+
+        LeaseObserver(long observedLeaseId) {
+            this.observedLeaseId = observedLeaseId;
+        }
+
+        @Override
+        public void onNext(LeaseKeepAliveResponse response) {
+            if (response.getTTL() <= 0) {
+                // lease expired before it was kept alive
+                onLeaseLost(observedLeaseId);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            log.warning("Lease keep-alive failed: " + throwable);
+            onLeaseLost(observedLeaseId);
+        }
+
+        @Override
+        public void onCompleted() {
+            onLeaseLost(observedLeaseId);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import com.kumuluz.ee.discovery.enums.ServiceType;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Cached state of a service in one environment. Holds the values of all keys under the service prefix, as read from
+ * etcd and updated by the watch, and immutable instance snapshots of every version, which are rebuilt from them. Keys
+ * are applied under the lock of the state, snapshots are read without locking.
+ *
+ * @since 1.2.0
+ */
+public class Etcd3ServiceState {
+
+    private static final Logger log = Logger.getLogger(Etcd3ServiceState.class.getName());
+
+    private static final String INSTANCES = "instances/";
+    private static final String GATEWAY_URL = "gatewayUrl";
+
+    private final String prefix;
+    private final String clusterId;
+
+    // version -> instance id -> attribute -> value
+    private final Map<String, Map<String, Map<String, String>>> instanceValues = new HashMap<>();
+    private final Map<String, String> gatewayUrlValues = new HashMap<>();
+
+    private volatile Map<String, Etcd3ServiceInstances> instances = Collections.emptyMap();
+    private volatile Map<String, URL[]> gatewayUrls = Collections.emptyMap();
+
+    private final Map<String, Etcd3ServiceInstances> lastKnownInstances = new ConcurrentHashMap<>();
+    private volatile String lastKnownVersion;
+
+    private volatile long revision;
+
+    /**
+     * Creates an empty state.
+     *
+     * @param prefix    service prefix, see {@link Etcd3Utils#getServicePrefix(String, String)}
+     * @param clusterId cluster id of this instance; instances in the same cluster are accessed by their container URL
+     */
+    public Etcd3ServiceState(String prefix, String clusterId) {
+        this.prefix = prefix;
+        this.clusterId = clusterId;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Applies a put or a delete of the key. Snapshots are not updated until {@link #rebuild(Collection)} is called.
+     *
+     * @param key   key under the service prefix
+     * @param value new value or null, if the key was deleted
+     * @return version, the key belongs to, or null if the key is not a gateway URL or an instance attribute
+     */
+    public synchronized String apply(String key, String value) {
+        if (!key.startsWith(prefix)) {
+            return null;
+        }
+
+        // {version}/gatewayUrl or {version}/instances/{instanceId}/{attribute}
+        int versionEnd = key.indexOf('/', prefix.length());
+        if (versionEnd < 0) {
+            return null;
+        }
+        String version = key.substring(prefix.length(), versionEnd);
+
+        if (key.length() - versionEnd - 1 == GATEWAY_URL.length() && key.endsWith(GATEWAY_URL)) {
+            if (value == null) {
+                gatewayUrlValues.remove(version);
+            } else {
+                gatewayUrlValues.put(version, value);
+            }
+            return version;
+        }
+
+        if (!key.startsWith(INSTANCES, versionEnd + 1)) {
+            return null;
+        }
+        int instanceIdStart = versionEnd + 1 + INSTANCES.length();
+        int instanceIdEnd = key.indexOf('/', instanceIdStart);
+        if (instanceIdEnd < 0) {
+            return null;
+        }
+        String instanceId = key.substring(instanceIdStart, instanceIdEnd);
+        String attribute = key.substring(instanceIdEnd + 1);
+
+        if (value == null) {
+            Map<String, Map<String, String>> versionInstances = instanceValues.get(version);
+            if (versionInstances != null) {
+                Map<String, String> attributes = versionInstances.get(instanceId);
+                if (attributes != null) {
+                    attributes.remove(attribute);
+                    if (attributes.isEmpty()) {
+                        versionInstances.remove(instanceId);
+                    }
+                }
+                if (versionInstances.isEmpty()) {
+                    instanceValues.remove(version);
+                }
+            }
+        } else {
+            instanceValues.computeIfAbsent(version, v -> new HashMap<>())
+                    .computeIfAbsent(instanceId, i -> new HashMap<>())
+                    .put(attribute, value);
+        }
+
+        return version;
+    }
+
+    /**
+     * Removes all values, before the state is read from etcd again. Snapshots are kept until they are rebuilt.
+     *
+     * @return versions, which had values or snapshots, and need to be rebuilt
+     */
+    public synchronized Set<String> clear() {
+        Set<String> versions = getVersions();
+        instanceValues.clear();
+        gatewayUrlValues.clear();
+
+        return versions;
+    }
+
+    /**
+     * Returns versions, which have values or snapshots.
+     */
+    public synchronized Set<String> getVersions() {
+        Set<String> versions = new HashSet<>(instanceValues.keySet());
+        versions.addAll(gatewayUrlValues.keySet());
+        versions.addAll(instances.keySet());
+
+        return versions;
+    }
+
+    /**
+     * Rebuilds snapshots of the given versions from the current values. If the last instance of a version is removed,
+     * its previous snapshot is kept as the last known instances of the version.
+     *
+     * @param versions versions to rebuild
+     * @return true, if versions available for any service type have changed
+     */
+    public synchronized boolean rebuild(Collection<String> versions) {
+        Map<String, Etcd3ServiceInstances> updatedInstances = new HashMap<>(this.instances);
+        Map<String, URL[]> updatedGatewayUrls = new HashMap<>(this.gatewayUrls);
+        boolean versionsChanged = false;
+
+        for (String version : versions) {
+            Etcd3ServiceInstances previous = updatedInstances.get(version);
+            Etcd3ServiceInstances snapshot = buildInstances(version);
+
+            if (snapshot.isEmpty()) {
+                if (previous != null) {
+                    updatedInstances.remove(version);
+                    this.lastKnownInstances.put(version, previous);
+                    this.lastKnownVersion = version;
+                    versionsChanged = true;
+                }
+            } else {
+                updatedInstances.put(version, snapshot);
+                versionsChanged |= !hasSameServiceTypes(previous, snapshot);
+            }
+
+            URL gatewayUrl = null;
+            String gatewayUrlValue = gatewayUrlValues.get(version);
+            if (gatewayUrlValue != null) {
+                try {
+                    gatewayUrl = new URL(gatewayUrlValue);
+                } catch (MalformedURLException e) {
+                    log.severe("Malformed URL exception: " + e.toString());
+                }
+            }
+            if (gatewayUrl == null) {
+                updatedGatewayUrls.remove(version);
+            } else {
+                updatedGatewayUrls.put(version, new URL[]{gatewayUrl});
+            }
+        }
+
+        this.instances = Collections.unmodifiableMap(updatedInstances);
+        this.gatewayUrls = Collections.unmodifiableMap(updatedGatewayUrls);
+
+        return versionsChanged;
+    }
+
+    private Etcd3ServiceInstances buildInstances(String version) {
+        Map<String, Etcd3Service> services = new HashMap<>();
+
+        Map<String, Map<String, String>> versionInstances = instanceValues.get(version);
+        if (versionInstances != null) {
+            for (Map.Entry<String, Map<String, String>> instance : versionInstances.entrySet()) {
+                Map<String, String> attributes = instance.getValue();
+
+                String url = attributes.get("url");
+                if (url == null || "disabled".equals(attributes.get("status"))) {
+                    continue;
+                }
+
+                String containerUrlString = attributes.get("containerUrl");
+                String instanceClusterId = attributes.get("clusterId");
+                ServiceType serviceType = null;
+                try {
+                    if (attributes.get("type") != null) {
+                        serviceType = ServiceType.valueOf(attributes.get("type"));
+                    }
+                } catch (IllegalArgumentException e) {
+                    log.severe(e.toString());
+                }
+
+                try {
+                    URL containerUrl = (containerUrlString == null || containerUrlString.isEmpty()) ?
+                            null : new URL(containerUrlString);
+                    services.put(instance.getKey(), new Etcd3Service(new URL(url), containerUrl,
+                            (instanceClusterId == null || instanceClusterId.isEmpty()) ? null : instanceClusterId,
+                            serviceType));
+                } catch (MalformedURLException e) {
+                    log.severe("Malformed URL exception: " + e.toString());
+                }
+            }
+        }
+
+        return new Etcd3ServiceInstances(services, this.clusterId);
+    }
+
+    private static boolean hasSameServiceTypes(Etcd3ServiceInstances previous, Etcd3ServiceInstances current) {
+        if (previous == null) {
+            return false;
+        }
+        for (ServiceType serviceType : ServiceType.values()) {
+            if ((previous.getUrls(serviceType).length == 0) != (current.getUrls(serviceType).length == 0)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns instances of the version or null, if the version has no instances.
+     */
+    public Etcd3ServiceInstances getInstances(String version) {
+        return instances.get(version);
+    }
+
+    /**
+     * Returns the last instances of the version, before all of them were removed, or null.
+     */
+    public Etcd3ServiceInstances getLastKnownInstances(String version) {
+        return lastKnownInstances.get(version);
+    }
+
+    /**
+     * Returns the version, which most recently lost all of its instances, or null.
+     */
+    public String getLastKnownVersion() {
+        return lastKnownVersion;
+    }
+
+    /**
+     * Returns the gateway URL of the version as a single element array or an empty array, if it is not set.
+     */
+    public URL[] getGatewayUrl(String version) {
+        URL[] gatewayUrl = gatewayUrls.get(version);
+        return (gatewayUrl == null) ? Etcd3ServiceInstances.NO_URLS : gatewayUrl;
+    }
+
+    /**
+     * Returns versions, which have instances of the given service type.
+     */
+    public List<String> getVersions(ServiceType serviceType) {
+        List<String> versions = new LinkedList<>();
+        for (Map.Entry<String, Etcd3ServiceInstances> entry : instances.entrySet()) {
+            if (entry.getValue().getUrls(serviceType).length > 0) {
+                versions.add(entry.getKey());
+            }
+        }
+
+        return versions;
+    }
+
+    /**
+     * Returns the revision of etcd, up to which the state is known.
+     */
+    public long getRevision() {
+        return revision;
+    }
+
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery.utils;
+
+import io.etcd.jetcd.ByteSequence;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Util class for etcd v3. Keys follow the same schema as with the v2 API, so that registered services are laid out
+ * the same way in both.
+ *
+ * @since 1.2.0
+ */
+public class Etcd3Utils {
+
+    public static ByteSequence toByteSequence(String value) {
+        return ByteSequence.from(value, StandardCharsets.UTF_8);
+    }
+
+    public static String toString(ByteSequence byteSequence) {
+        return byteSequence.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the prefix of all keys of the service: its versions, instances and gateway URLs.
+     */
+    public static String getServicePrefix(String environment, String serviceName) {
+        return "/environments/" + environment + "/services/" + serviceName + "/";
+    }
+
+    public static String getServiceInstancesPrefix(String environment, String serviceName, String serviceVersion) {
+        return getServicePrefix(environment, serviceName) + serviceVersion + "/instances/";
+    }
+
+    public static String getServiceInstanceKey(String environment, String serviceName, String serviceVersion,
+                                               String serviceId) {
+        return getServiceInstancesPrefix(environment, serviceName, serviceVersion) + serviceId;
+    }
+}
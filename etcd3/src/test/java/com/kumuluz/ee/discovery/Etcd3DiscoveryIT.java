@@ -0,0 +1,179 @@
+/*
+ *  Copyright (c) 2014-2017 Kumuluz and/or its affiliates
+ *  and other contributors as indicated by the @author tags and
+ *  the contributor list.
+ *
+ *  Licensed under the MIT License (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  https://opensource.org/licenses/MIT
+ *
+ *  The software is provided "AS IS", WITHOUT WARRANTY OF ANY KIND, express or
+ *  implied, including but not limited to the warranties of merchantability,
+ *  fitness for a particular purpose and noninfringement. in no event shall the
+ *  authors or copyright holders be liable for any claim, damages or other
+ *  liability, whether in an action of contract, tort or otherwise, arising from,
+ *  out of or in connection with the software or the use or other dealings in the
+ *  software. See the License for the specific language governing permissions and
+ *  limitations under the License.
+*/
+package com.kumuluz.ee.discovery;
+
+import com.kumuluz.ee.configuration.utils.ConfigurationImpl;
+import com.kumuluz.ee.configuration.utils.ConfigurationUtil;
+import com.kumuluz.ee.discovery.enums.AccessType;
+import com.kumuluz.ee.discovery.enums.ServiceType;
+import com.kumuluz.ee.discovery.utils.Etcd3Utils;
+import io.etcd.jetcd.Client;
+import io.etcd.jetcd.KeyValue;
+import io.etcd.jetcd.launcher.EtcdCluster;
+import io.etcd.jetcd.launcher.EtcdClusterFactory;
+import io.etcd.jetcd.options.GetOption;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Registers and discovers services against an etcd server, launched in a container. Run with the integration-tests
+ * profile, which requires Docker.
+ *
+ * @since 1.2.0
+ */
+public class Etcd3DiscoveryIT {
+
+    private static final String SERVICE_NAME = "test-service";
+    private static final String VERSION = "1.0.0";
+    private static final String ENVIRONMENT = "dev";
+
+    private static final long TIMEOUT_MS = 20000;
+
+    private static EtcdCluster cluster;
+    private static Client etcd;
+
+    private Etcd3DiscoveryUtilImpl registering;
+    private Etcd3DiscoveryUtilImpl discovering;
+
+    @BeforeClass
+    public static void startEtcd() {
+        cluster = EtcdClusterFactory.buildCluster("kumuluzee-discovery", 1, false);
+        cluster.start();
+
+        List<URI> endpoints = cluster.getClientEndpoints();
+        etcd = Client.builder().endpoints(endpoints.toArray(new URI[0])).build();
+
+        System.setProperty("kumuluzee.discovery.etcd.hosts",
+                endpoints.stream().map(URI::toString).collect(Collectors.joining(",")));
+        System.setProperty("kumuluzee.discovery.negative-cache.ttl-ms", "0");
+        ConfigurationUtil.initialize(new ConfigurationImpl());
+    }
+
+    @AfterClass
+    public static void stopEtcd() {
+        if (etcd != null) {
+            etcd.close();
+        }
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    @Before
+    public void init() {
+        registering = new Etcd3DiscoveryUtilImpl();
+        registering.init();
+
+        discovering = new Etcd3DiscoveryUtilImpl();
+        discovering.init();
+    }
+
+    @After
+    public void deregister() {
+        registering.deregister();
+        discovering.deregister();
+    }
+
+    @Test
+    public void registeredInstanceIsDiscovered() throws Exception {
+        URL url = new URL("http://localhost:8080");
+        register("instance-1", url);
+
+        await(() -> getInstances().contains(url), "registered instance was not discovered");
+    }
+
+    @Test
+    public void watchUpdatesDiscoveredInstances() throws Exception {
+        URL url1 = new URL("http://localhost:8081");
+        URL url2 = new URL("http://localhost:8082");
+        register("instance-1", url1);
+        await(() -> getInstances().contains(url1), "registered instance was not discovered");
+
+        // the service is cached now, further changes are only received over the watch
+        register("instance-2", url2);
+        await(() -> getInstances().contains(url2), "added instance was not received over the watch");
+
+        registering.deregister("instance-2");
+        await(() -> getInstances().equals(Collections.singletonList(url1)),
+                "removed instance was not received over the watch");
+    }
+
+    @Test
+    public void instanceIsRegisteredAgainAfterLeaseLoss() throws Exception {
+        URL url = new URL("http://localhost:8083");
+        register("instance-1", url);
+        await(() -> getInstances().contains(url), "registered instance was not discovered");
+
+        String urlKey = Etcd3Utils.getServiceInstanceKey(ENVIRONMENT, SERVICE_NAME, VERSION, "instance-1") + "/url";
+        long leaseId = getLease(urlKey);
+
+        // revoking the lease deletes the instance keys, as if the lease had expired
+        etcd.getLeaseClient().revoke(leaseId).get(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+        await(() -> {
+            long newLeaseId = getLease(urlKey);
+            return newLeaseId != 0 && newLeaseId != leaseId;
+        }, "instance was not registered again");
+        await(() -> getInstances().contains(url), "registered instance was not discovered again");
+    }
+
+    private void register(String serviceId, URL url) {
+        registering.register(SERVICE_NAME, VERSION, ENVIRONMENT, 5, 1, false, url.toString(), serviceId,
+                ServiceType.REST);
+    }
+
+    private List<URL> getInstances() {
+        return discovering.getServiceInstances(SERVICE_NAME, VERSION, ENVIRONMENT, AccessType.DIRECT,
+                ServiceType.REST).orElse(Collections.emptyList());
+    }
+
+    private static long getLease(String key) {
+        try {
+            List<KeyValue> kvs = etcd.getKVClient().get(Etcd3Utils.toByteSequence(key), GetOption.DEFAULT)
+                    .get(TIMEOUT_MS, TimeUnit.MILLISECONDS).getKvs();
+            return kvs.isEmpty() ? 0 : kvs.get(0).getLease();
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                Assert.fail(message);
+            }
+            Thread.sleep(100);
+        }
+    }
+}